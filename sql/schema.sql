@@ -29,9 +29,11 @@ CREATE TABLE public.usuarios (
     administrador boolean NOT NULL,
     bloqueado boolean NOT NULL,
     email character varying(255) NOT NULL,
+    fecha_alta date DEFAULT CURRENT_DATE,
     fecha_nacimiento date,
     nombre character varying(255),
-    password character varying(255)
+    password character varying(255),
+    version bigint DEFAULT 0 NOT NULL
 );
 
 
@@ -73,6 +75,119 @@ ALTER TABLE ONLY public.usuarios
     ADD CONSTRAINT usuarios_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: productos; Type: TABLE; Schema: public; Owner: iweb
+--
+
+CREATE TABLE public.productos (
+    id bigint NOT NULL,
+    deporte character varying(255) NOT NULL,
+    descripcion character varying(255),
+    imagen character varying(255),
+    marca character varying(255) NOT NULL,
+    nombre character varying(255) NOT NULL,
+    popularidad integer NOT NULL,
+    precio numeric(10,2) NOT NULL,
+    stock integer NOT NULL,
+    talla character varying(255)
+);
+
+
+ALTER TABLE public.productos OWNER TO iweb;
+
+--
+-- Name: productos_id_seq; Type: SEQUENCE; Schema: public; Owner: iweb
+--
+
+CREATE SEQUENCE public.productos_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER TABLE public.productos_id_seq OWNER TO iweb;
+
+ALTER SEQUENCE public.productos_id_seq OWNED BY public.productos.id;
+
+ALTER TABLE ONLY public.productos ALTER COLUMN id SET DEFAULT nextval('public.productos_id_seq'::regclass);
+
+ALTER TABLE ONLY public.productos
+    ADD CONSTRAINT productos_pkey PRIMARY KEY (id);
+
+
+--
+-- Name: carrito_lineas; Type: TABLE; Schema: public; Owner: iweb
+--
+
+CREATE TABLE public.carrito_lineas (
+    producto_id bigint NOT NULL,
+    usuario_id bigint NOT NULL,
+    cantidad integer NOT NULL
+);
+
+
+ALTER TABLE public.carrito_lineas OWNER TO iweb;
+
+ALTER TABLE ONLY public.carrito_lineas
+    ADD CONSTRAINT carrito_lineas_pkey PRIMARY KEY (producto_id, usuario_id);
+
+
+--
+-- Name: pedidos; Type: TABLE; Schema: public; Owner: iweb
+--
+
+CREATE TABLE public.pedidos (
+    id bigint NOT NULL,
+    fecha timestamp without time zone NOT NULL,
+    numero_articulos integer NOT NULL,
+    total numeric(12,2) NOT NULL,
+    usuario_id bigint NOT NULL
+);
+
+
+ALTER TABLE public.pedidos OWNER TO iweb;
+
+--
+-- Name: pedidos_id_seq; Type: SEQUENCE; Schema: public; Owner: iweb
+--
+
+CREATE SEQUENCE public.pedidos_id_seq
+    START WITH 1
+    INCREMENT BY 100
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER TABLE public.pedidos_id_seq OWNER TO iweb;
+
+ALTER TABLE ONLY public.pedidos
+    ADD CONSTRAINT pedidos_pkey PRIMARY KEY (id);
+
+CREATE INDEX pedidos_usuario_id_idx ON public.pedidos USING btree (usuario_id, id);
+
+
+--
+-- Name: pedido_lineas; Type: TABLE; Schema: public; Owner: iweb
+--
+
+CREATE TABLE public.pedido_lineas (
+    pedido_id bigint NOT NULL,
+    producto_id bigint NOT NULL,
+    cantidad integer NOT NULL,
+    nombre character varying(255) NOT NULL,
+    precio numeric(10,2) NOT NULL
+);
+
+
+ALTER TABLE public.pedido_lineas OWNER TO iweb;
+
+ALTER TABLE ONLY public.pedido_lineas
+    ADD CONSTRAINT pedido_lineas_pkey PRIMARY KEY (pedido_id, producto_id);
+
+
 --
 -- PostgreSQL database dump complete
 --
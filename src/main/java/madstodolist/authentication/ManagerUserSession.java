@@ -1,5 +1,6 @@
 package madstodolist.authentication;
 
+import madstodolist.service.EstadoUsuariosService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +12,9 @@ public class ManagerUserSession {
     @Autowired
     HttpSession session;
 
+    @Autowired
+    private EstadoUsuariosService estadoUsuariosService;
+
     // Añadimos el id de usuario en la sesión HTTP para hacer
     // una autorización sencilla. En los métodos de controllers
     // comprobamos si el id del usuario logeado coincide con el obtenido
@@ -20,11 +24,29 @@ public class ManagerUserSession {
         session.setAttribute("esAdministrador", esAdministrador); // Guardamos si el usuario es administrador
     }
 
+    // El rol y el bloqueo guardados en la sesión se contrastan con el estado en memoria
+    // del usuario, que se invalida cuando cambia en cualquier nodo: si lo han bloqueado
+    // o eliminado se cierra la sesión, y si le han cambiado el rol se actualiza.
     public Long usuarioLogeado() {
-        return (Long) session.getAttribute("idUsuarioLogeado");
+        Long idUsuario = (Long) session.getAttribute("idUsuarioLogeado");
+        if (idUsuario == null) {
+            return null;
+        }
+        EstadoUsuariosService.Estado estado = estadoUsuariosService.estado(idUsuario);
+        if (estado == null || estado.isBloqueado()) {
+            logout();
+            return null;
+        }
+        if (!Boolean.valueOf(estado.isAdministrador()).equals(session.getAttribute("esAdministrador"))) {
+            session.setAttribute("esAdministrador", estado.isAdministrador());
+        }
+        return idUsuario;
     }
 
     public boolean esAdministrador() {
+        if (usuarioLogeado() == null) {
+            return false;
+        }
         Boolean esAdmin = (Boolean) session.getAttribute("esAdministrador");
         return esAdmin != null && esAdmin; // Verificamos si el usuario es administrador
     }
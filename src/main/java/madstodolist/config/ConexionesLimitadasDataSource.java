@@ -0,0 +1,103 @@
+package madstodolist.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// DataSource que limita con un semáforo las conexiones en uso a la vez.
+// Con hilos virtuales el número de hilos ya no acota el de peticiones que llegan a
+// la base de datos: el semáforo deja esperar a las que sobran en una cola justa, sin
+// ocupar hilos del sistema, y avisa cuando la espera es larga. El permiso se
+// devuelve al cerrar la conexión.
+public class ConexionesLimitadasDataSource extends DelegatingDataSource {
+
+    Logger logger = LoggerFactory.getLogger(ConexionesLimitadasDataSource.class);
+
+    private final Semaphore permisos;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final long avisoEsperaMs;
+
+    public ConexionesLimitadasDataSource(DataSource dataSource, int maximo, long esperaMaximaMs, long avisoEsperaMs) {
+        super(dataSource);
+        this.permisos = new Semaphore(maximo, true);
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.avisoEsperaMs = avisoEsperaMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return liberarAlCerrar(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        adquirir();
+        try {
+            return liberarAlCerrar(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    // Conexiones en uso en este momento
+    public int enUso() {
+        return maximo - permisos.availablePermits();
+    }
+
+    private void adquirir() throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No hay conexiones libres tras esperar " + esperaMaximaMs
+                        + " ms (" + maximo + " en uso, " + permisos.getQueueLength() + " peticiones en cola)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando una conexión", e);
+        }
+        long esperaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        if (esperaMs >= avisoEsperaMs) {
+            logger.warn("Espera de {} ms por una conexión ({} peticiones en cola)", esperaMs, permisos.getQueueLength());
+        }
+    }
+
+    private Connection liberarAlCerrar(Connection conexion) {
+        AtomicBoolean liberada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    if (metodo.getName().equals("close") && liberada.compareAndSet(false, true)) {
+                        try {
+                            return metodo.invoke(conexion, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            permisos.release();
+                        }
+                    }
+                    try {
+                        return metodo.invoke(conexion, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,97 @@
+package madstodolist.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Modo opcional de atención de peticiones con hilos virtuales (servidor.hilos-virtuales=true).
+// Si el runtime los tiene (Java 21 o posterior) Tomcat atiende cada petición en un hilo
+// virtual, de modo que una base de datos lenta no agota el pool de hilos; si no, se
+// mantiene el pool de Tomcat. En modo virtual las conexiones a la base de datos se
+// limitan con un semáforo y se pueden trazar los hilos virtuales anclados a su
+// hilo portador (bloques synchronized o código nativo con E/S).
+// Un hilo virtual que espera dentro de synchronized (por E/S, wait() o un cerrojo)
+// no suelta su hilo portador, así que los servicios usan ReentrantLock en las
+// secciones críticas que hacen E/S o esperan, y synchronized solo en las que no.
+@Configuration
+@ConditionalOnProperty(name = "servidor.hilos-virtuales", havingValue = "true")
+public class HilosVirtualesConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(HilosVirtualesConfig.class);
+
+    private ExecutorService ejecutor;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> ejecutorHilosVirtuales(Environment env) {
+        return protocolHandler -> {
+            if (!hilosVirtualesDisponibles()) {
+                logger.warn("Java {} no tiene hilos virtuales; las peticiones se atienden con el pool de Tomcat",
+                        Runtime.version().feature());
+                return;
+            }
+            // La traza de anclajes se lee al crear el primer hilo virtual
+            String anclaje = env.getProperty("servidor.hilos-virtuales.diagnostico-anclaje", "");
+            if (!anclaje.isEmpty() && System.getProperty("jdk.tracePinnedThreads") == null) {
+                System.setProperty("jdk.tracePinnedThreads", anclaje);
+            }
+            try {
+                ejecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("No se han podido crear hilos virtuales; se usa el pool de Tomcat", e);
+                return;
+            }
+            protocolHandler.setExecutor(ejecutor);
+            logger.info("Peticiones atendidas con hilos virtuales");
+        };
+    }
+
+    // Envuelve el DataSource para limitar las conexiones en uso cuando hay hilos virtuales
+    @Bean
+    public static BeanPostProcessor limiteConexiones(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof ConexionesLimitadasDataSource
+                        || !hilosVirtualesDisponibles()) {
+                    return bean;
+                }
+                int maximo = env.getProperty("servidor.hilos-virtuales.conexiones", Integer.class,
+                        env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+                long esperaMaximaMs = env.getProperty("servidor.hilos-virtuales.espera-conexion-ms", Long.class, 30000L);
+                long avisoEsperaMs = env.getProperty("servidor.hilos-virtuales.aviso-espera-ms", Long.class, 1000L);
+                logger.info("Conexiones a la base de datos limitadas a {} con semáforo", maximo);
+                return new ConexionesLimitadasDataSource((DataSource) bean, maximo, esperaMaximaMs, avisoEsperaMs);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (ejecutor != null) {
+            ejecutor.shutdown();
+        }
+    }
+
+    static boolean hilosVirtualesDisponibles() {
+        if (Runtime.version().feature() < 21) {
+            return false;
+        }
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package madstodolist.controller;
+
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.controller.exception.UsuarioNoLogeadoException;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.CarritoServiceException;
+import madstodolist.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@Controller
+public class CarritoController {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ManagerUserSession managerUserSession;
+
+    // Atributos comunes a todas las vistas
+    @ModelAttribute
+    public void addAttributes(Model model) {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado != null) {
+            UsuarioData usuario = usuarioService.findById(idUsuarioLogeado);
+            if (usuario != null) {
+                model.addAttribute("nombreUsuario", usuario.getNombre());
+                model.addAttribute("usuarioId", usuario.getId());
+                model.addAttribute("esAdministrador", managerUserSession.esAdministrador());
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
+            }
+        } else {
+            model.addAttribute("nombreUsuario", null);
+            model.addAttribute("usuarioId", null);
+            model.addAttribute("esAdministrador", false);
+        }
+    }
+
+    // Contenido del carrito del usuario logeado
+    @GetMapping("/carrito")
+    public String verCarrito(Model model) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        model.addAttribute("carrito", carritoService.getCarrito(idUsuario));
+        return "carrito";
+    }
+
+    @PostMapping("/carrito/anadir")
+    public String anadirProducto(@RequestParam Long productoId,
+                                 @RequestParam(defaultValue = "1") int cantidad) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        try {
+            carritoService.anadirProducto(idUsuario, productoId, cantidad);
+        } catch (CarritoServiceException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return "redirect:/productos/" + productoId;
+    }
+
+    @PostMapping("/carrito/{productoId}/eliminar")
+    public String eliminarProducto(@PathVariable Long productoId) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        carritoService.eliminarProducto(idUsuario, productoId);
+        return "redirect:/carrito";
+    }
+
+    @PostMapping("/carrito/vaciar")
+    public String vaciarCarrito() {
+        Long idUsuario = comprobarUsuarioLogeado();
+        carritoService.vaciarCarrito(idUsuario);
+        return "redirect:/carrito";
+    }
+
+    private Long comprobarUsuarioLogeado() {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null) {
+            throw new UsuarioNoLogeadoException();
+        }
+        return idUsuarioLogeado;
+    }
+}
@@ -2,6 +2,8 @@ package madstodolist.controller;
 
 import madstodolist.authentication.ManagerUserSession;
 import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.RecomendacionService;
 import madstodolist.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -20,6 +22,12 @@ public class HomeController {
     @Autowired
     ManagerUserSession managerUserSession;
 
+    @Autowired
+    CarritoService carritoService;
+
+    @Autowired
+    RecomendacionService recomendacionService;
+
     @GetMapping("/about")
     public String about(Model model) {
         return "about";
@@ -37,6 +45,7 @@ public class HomeController {
                 model.addAttribute("nombreUsuario", usuario.getNombre());
                 model.addAttribute("usuarioId", usuario.getId());
                 model.addAttribute("esAdministrador", esAdministrador);
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
             }
         } else {
             model.addAttribute("nombreUsuario", null);
@@ -61,7 +70,9 @@ public class HomeController {
                 "/images/product3.jpg"
         );
 
-        // Imágenes de "Descubre más"
+        // "Descubre más": recomendaciones precalculadas para el usuario (o los más vendidos).
+        // Las imágenes fijas solo se usan si todavía no hay productos en el catálogo.
+        model.addAttribute("recomendaciones", recomendacionService.recomendaciones(managerUserSession.usuarioLogeado()));
         List<String> discoverImages = List.of(
                 "/images/product4.jpg",
                 "/images/product5.jpg",
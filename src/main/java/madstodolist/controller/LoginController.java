@@ -4,6 +4,8 @@ import madstodolist.authentication.ManagerUserSession;
 import madstodolist.dto.LoginData;
 import madstodolist.dto.RegistroData;
 import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.RecomendacionService;
 import madstodolist.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -26,6 +28,12 @@ public class LoginController {
     @Autowired
     ManagerUserSession managerUserSession;
 
+    @Autowired
+    CarritoService carritoService;
+
+    @Autowired
+    RecomendacionService recomendacionService;
+
     @GetMapping("/")
     public String home(Model model) {
         Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
@@ -51,7 +59,9 @@ public class LoginController {
                 "/images/product3.jpg"
         );
 
-        // Imágenes de "Descubre más"
+        // "Descubre más": recomendaciones precalculadas para el usuario (o los más vendidos).
+        // Las imágenes fijas solo se usan si todavía no hay productos en el catálogo.
+        model.addAttribute("recomendaciones", recomendacionService.recomendaciones(null));
         List<String> discoverImages = List.of(
                 "/images/product4.jpg",
                 "/images/product5.jpg",
@@ -156,6 +166,7 @@ public class LoginController {
             if (usuario != null) {
                 model.addAttribute("nombreUsuario", usuario.getNombre());
                 model.addAttribute("usuarioId", usuario.getId());
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
             } else {
                 model.addAttribute("nombreUsuario", null);
                 model.addAttribute("usuarioId", null);
@@ -0,0 +1,125 @@
+package madstodolist.controller;
+
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.controller.exception.UsuarioNoLogeadoException;
+import madstodolist.dto.PedidoData;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.PedidoService;
+import madstodolist.service.PedidoServiceException;
+import madstodolist.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Controller
+public class PedidoController {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ManagerUserSession managerUserSession;
+
+    // Atributos comunes a todas las vistas
+    @ModelAttribute
+    public void addAttributes(Model model) {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado != null) {
+            UsuarioData usuario = usuarioService.findById(idUsuarioLogeado);
+            if (usuario != null) {
+                model.addAttribute("nombreUsuario", usuario.getNombre());
+                model.addAttribute("usuarioId", usuario.getId());
+                model.addAttribute("esAdministrador", managerUserSession.esAdministrador());
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
+            }
+        } else {
+            model.addAttribute("nombreUsuario", null);
+            model.addAttribute("usuarioId", null);
+            model.addAttribute("esAdministrador", false);
+        }
+    }
+
+    // Compra del carrito. La respuesta es asíncrona: el hilo de la petición queda
+    // libre y la redirección se envía cuando el pedido está guardado. Si falla,
+    // el motivo llega al carrito como atributo flash.
+    @PostMapping("/carrito/comprar")
+    public CompletableFuture<String> comprarCarrito(Model model, RedirectAttributes redirectAttributes) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        CompletableFuture<PedidoData> pedido;
+        try {
+            pedido = pedidoService.realizarPedido(idUsuario);
+        } catch (PedidoServiceException e) {
+            model.addAttribute("carrito", carritoService.getCarrito(idUsuario));
+            model.addAttribute("error", e.getMessage());
+            return CompletableFuture.completedFuture("carrito");
+        }
+        return pedido.handle((pedidoData, error) -> {
+            if (error == null) {
+                return "redirect:/pedidos/" + pedidoData.getId();
+            }
+            Throwable causa = error instanceof CompletionException ? error.getCause() : error;
+            redirectAttributes.addFlashAttribute("error", causa instanceof PedidoServiceException
+                    ? causa.getMessage()
+                    : "No se ha podido completar el pedido. Inténtalo de nuevo.");
+            return "redirect:/carrito";
+        });
+    }
+
+    // Pedidos del usuario logeado
+    @GetMapping("/pedidos")
+    public String listaPedidos(Model model) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        model.addAttribute("pedidos", pedidoService.pedidosUsuario(idUsuario, 50));
+        return "listaPedidos";
+    }
+
+    // Métricas de la escritura de pedidos - Solo para administradores
+    @GetMapping("/pedidos/metricas")
+    public String metricasPedidos(Model model) {
+        validarAdministrador();
+        model.addAttribute("metricas", pedidoService.getMetricas());
+        return "metricasPedidos";
+    }
+
+    // Detalle de un pedido: solo lo ven su comprador y los administradores
+    @GetMapping("/pedidos/{id}")
+    public String detallePedido(@PathVariable Long id, Model model) {
+        Long idUsuario = comprobarUsuarioLogeado();
+        PedidoData pedido = pedidoService.findById(id);
+        if (pedido == null || (!pedido.getUsuarioId().equals(idUsuario) && !managerUserSession.esAdministrador())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Pedido no encontrado");
+        }
+        model.addAttribute("pedido", pedido);
+        return "pedido";
+    }
+
+    private Long comprobarUsuarioLogeado() {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null) {
+            throw new UsuarioNoLogeadoException();
+        }
+        return idUsuarioLogeado;
+    }
+
+    // Validar si el usuario actual es administrador
+    private void validarAdministrador() {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null || !managerUserSession.esAdministrador()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No tiene permisos para acceder a esta página.");
+        }
+    }
+}
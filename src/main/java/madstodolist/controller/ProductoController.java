@@ -0,0 +1,159 @@
+package madstodolist.controller;
+
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.dto.BusquedaProductosData;
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.dto.ProductoData;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.InventarioService;
+import madstodolist.service.ProductoService;
+import madstodolist.service.ProductoServiceException;
+import madstodolist.service.RecomendacionService;
+import madstodolist.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@Controller
+public class ProductoController {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ManagerUserSession managerUserSession;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private RecomendacionService recomendacionService;
+
+    // Atributos comunes a todas las vistas
+    @ModelAttribute
+    public void addAttributes(Model model) {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado != null) {
+            UsuarioData usuario = usuarioService.findById(idUsuarioLogeado);
+            if (usuario != null) {
+                model.addAttribute("nombreUsuario", usuario.getNombre());
+                model.addAttribute("usuarioId", usuario.getId());
+                model.addAttribute("esAdministrador", managerUserSession.esAdministrador());
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
+            }
+        } else {
+            model.addAttribute("nombreUsuario", null);
+            model.addAttribute("usuarioId", null);
+            model.addAttribute("esAdministrador", false);
+        }
+    }
+
+    // Catálogo con búsqueda por facetas (deporte, marca, talla y banda de precio)
+    @GetMapping("/productos")
+    public String listaProductos(@ModelAttribute("filtro") FiltroProductosData filtro,
+                                 @RequestParam(defaultValue = "0") int page,
+                                 @RequestParam(defaultValue = "12") int size,
+                                 Model model) {
+        if (page < 0 || size < 1 || size > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Página no válida");
+        }
+        BusquedaProductosData busqueda = productoService.buscarProductos(filtro, page, size);
+
+        model.addAttribute("busqueda", busqueda);
+        model.addAttribute("bandasPrecio", productoService.getBandasPrecio());
+        model.addAttribute("ordenes", FiltroProductosData.Orden.values());
+        model.addAttribute("currentPage", page);
+        model.addAttribute("pageSize", size);
+
+        return "listaProductos";
+    }
+
+    // Formulario para crear un nuevo producto - Solo para administradores
+    @GetMapping("/productos/nuevo")
+    public String nuevoProductoForm(Model model) {
+        validarAdministrador();
+        model.addAttribute("productoData", new ProductoData());
+        return "formProducto";
+    }
+
+    @PostMapping("/productos/nuevo")
+    public String crearProducto(@ModelAttribute ProductoData productoData, Model model) {
+        validarAdministrador();
+        try {
+            ProductoData producto = productoService.crearProducto(productoData);
+            return "redirect:/productos/" + producto.getId();
+        } catch (ProductoServiceException e) {
+            model.addAttribute("error", e.getMessage());
+            return "formProducto";
+        }
+    }
+
+    // Formulario para editar un producto existente
+    @GetMapping("/productos/{id}/editar")
+    public String editarProductoForm(@PathVariable Long id, Model model) {
+        validarAdministrador();
+        ProductoData productoData = productoService.findById(id);
+        if (productoData == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+        }
+        model.addAttribute("productoData", productoData);
+        return "formProducto";
+    }
+
+    @PostMapping("/productos/{id}/editar")
+    public String actualizarProducto(@PathVariable Long id, @ModelAttribute ProductoData productoData, Model model) {
+        validarAdministrador();
+        try {
+            productoService.actualizarProducto(id, productoData);
+            return "redirect:/productos/" + id;
+        } catch (ProductoServiceException e) {
+            productoData.setId(id);
+            ProductoData actual = productoService.findById(id);
+            if (actual != null) {
+                productoData.setStock(actual.getStock());
+            }
+            model.addAttribute("error", e.getMessage());
+            return "formProducto";
+        }
+    }
+
+    // Eliminar un producto
+    @PostMapping("/productos/{id}/eliminar")
+    public String eliminarProducto(@PathVariable Long id) {
+        validarAdministrador();
+        productoService.eliminarProducto(id);
+        return "redirect:/productos";
+    }
+
+    // Mostrar la descripción del producto
+    @GetMapping("/productos/{id}")
+    public String descripcionProducto(@PathVariable Long id, Model model) {
+        ProductoData producto = productoService.findById(id);
+        if (producto == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+        }
+        model.addAttribute("producto", producto);
+        model.addAttribute("disponibles", inventarioService.disponibles(id));
+        recomendacionService.registrarVisita(managerUserSession.usuarioLogeado(), id);
+        productoService.registrarVisita(id);
+        return "productoDescripcion";
+    }
+
+    // Validar si el usuario actual es administrador
+    private void validarAdministrador() {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null || !managerUserSession.esAdministrador()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No tiene permisos para acceder a esta página.");
+        }
+    }
+}
@@ -3,8 +3,12 @@ package madstodolist.controller;
 import madstodolist.authentication.ManagerUserSession;
 import madstodolist.dto.RegistroData;
 import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.EstadisticasUsuariosService;
+import madstodolist.service.UsuarioConflictoException;
 import madstodolist.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
@@ -12,8 +16,16 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Locale;
 
 @Controller
 public class UsuarioController {
@@ -24,6 +36,27 @@ public class UsuarioController {
     @Autowired
     private ManagerUserSession managerUserSession;
 
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private EstadisticasUsuariosService estadisticasUsuariosService;
+
+    @Autowired
+    private ThymeleafViewResolver thymeleafViewResolver;
+
+    // A partir de este tamaño de página el listado se renderiza en streaming
+    @Value("${listado.streaming.umbral:500}")
+    private int umbralStreaming;
+
+    // Tamaño del buffer de salida de la respuesta en modo streaming
+    @Value("${listado.streaming.buffer:8192}")
+    private int bufferStreaming;
+
+    // Cada cuántas filas se vuelca la salida al cliente en modo streaming
+    @Value("${listado.streaming.filas-por-volcado:200}")
+    private int filasPorVolcado;
+
     // Atributos comunes a todas las vistas
     @ModelAttribute
     public void addAttributes(Model model) {
@@ -34,6 +67,7 @@ public class UsuarioController {
                 model.addAttribute("nombreUsuario", usuario.getNombre());
                 model.addAttribute("usuarioId", usuario.getId());
                 model.addAttribute("esAdministrador", managerUserSession.esAdministrador());
+                model.addAttribute("numeroArticulosCarrito", carritoService.numeroArticulos(usuario.getId()));
             }
         } else {
             model.addAttribute("nombreUsuario", null);
@@ -46,8 +80,14 @@ public class UsuarioController {
     @GetMapping("/registrados")
     public String listaUsuariosRegistrados(@RequestParam(defaultValue = "0") int page,
                                            @RequestParam(defaultValue = "6") int size,
-                                           Model model) {
+                                           Model model,
+                                           HttpServletRequest request,
+                                           HttpServletResponse response) throws Exception {
         validarAdministrador();
+        if (size >= umbralStreaming) {
+            listaUsuariosRegistradosStreaming(page, size, model, request, response);
+            return null;
+        }
         Page<UsuarioData> usuariosPage = usuarioService.findAllUsuariosPaginados(page, size);
 
         model.addAttribute("usuarios", usuariosPage.getContent());
@@ -58,6 +98,39 @@ public class UsuarioController {
         return "listaUsuariosRegistrados";
     }
 
+    // Listado grande: la tabla se renderiza a medida que llegan las filas de la base
+    // de datos, con un buffer de salida acotado y volcados periódicos al cliente
+    private void listaUsuariosRegistradosStreaming(int page, int size, Model model,
+                                                   HttpServletRequest request,
+                                                   HttpServletResponse response) throws Exception {
+        long totalUsuarios = usuarioService.contarUsuarios();
+        model.addAttribute("currentPage", page);
+        model.addAttribute("totalPages", (int) ((totalUsuarios + size - 1) / size));
+        model.addAttribute("pageSize", size);
+
+        Locale locale = request.getLocale();
+        View view = thymeleafViewResolver.resolveViewName("listaUsuariosRegistrados", locale);
+        response.setBufferSize(bufferStreaming);
+        usuarioService.procesarPaginaUsuarios(page, size, usuarios -> {
+            model.addAttribute("usuarios", new IteradorConVolcado(usuarios, response, filasPorVolcado));
+            try {
+                view.render(model.asMap(), request, response);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error al renderizar el listado de usuarios", e);
+            }
+        });
+    }
+
+    // Panel de estadísticas de usuarios - Solo para administradores
+    @GetMapping("/registrados/estadisticas")
+    public String estadisticasUsuarios(Model model) {
+        validarAdministrador();
+        model.addAttribute("estadisticas", estadisticasUsuariosService.getEstadisticas());
+        return "estadisticasUsuarios";
+    }
+
     // Formulario para crear un nuevo usuario
     @GetMapping("/registrados/nuevo")
     public String nuevoUsuarioForm(Model model) {
@@ -84,17 +157,32 @@ public class UsuarioController {
         if (usuarioData == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado");
         }
+        // La contraseña no se envía al formulario: en blanco significa que no cambia
+        usuarioData.setPassword(null);
         model.addAttribute("usuarioData", usuarioData);
         return "formEditarUsuario";
     }
 
     @PostMapping("/registrados/{id}/editar")
-    public String actualizarUsuario(@PathVariable Long id, @ModelAttribute UsuarioData usuarioData, BindingResult result) {
+    public String actualizarUsuario(@PathVariable Long id, @ModelAttribute UsuarioData usuarioData, BindingResult result,
+                                    Model model) {
         validarAdministrador();
         if (result.hasErrors()) {
             return "formEditarUsuario";
         }
-        usuarioService.actualizarUsuario(id, usuarioData);
+        try {
+            usuarioService.actualizarUsuario(id, usuarioData);
+        } catch (UsuarioConflictoException e) {
+            // Edición sobre datos antiguos: se vuelve a mostrar el formulario con los datos actuales
+            UsuarioData actual = usuarioService.findById(id);
+            if (actual == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado");
+            }
+            actual.setPassword(null);
+            model.addAttribute("usuarioData", actual);
+            model.addAttribute("conflicto", e.getMessage());
+            return "formEditarUsuario";
+        }
         return "redirect:/registrados";
     }
 
@@ -102,7 +190,11 @@ public class UsuarioController {
     @PostMapping("/registrados/{id}/eliminar")
     public String eliminarUsuario(@PathVariable Long id) {
         validarAdministrador();
-        usuarioService.eliminarUsuario(id);
+        try {
+            usuarioService.eliminarUsuario(id);
+        } catch (UsuarioConflictoException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
         return "redirect:/registrados";
     }
 
@@ -129,7 +221,11 @@ public class UsuarioController {
     public String bloquearUsuario(@PathVariable Long id, @RequestParam("accion") String accion) {
         validarAdministrador();
         boolean bloquear = "bloquear".equals(accion);
-        usuarioService.cambiarEstadoBloqueoUsuario(id, bloquear);
+        try {
+            usuarioService.cambiarEstadoBloqueoUsuario(id, bloquear);
+        } catch (UsuarioConflictoException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
         return "redirect:/registrados";
     }
 
@@ -151,4 +247,35 @@ public class UsuarioController {
         usuarioData.setAdministrador(registroData.isAdministrador());
         return usuarioData;
     }
+
+    // Iterador que vuelca la respuesta al cliente cada cierto número de filas
+    private static class IteradorConVolcado implements Iterator<UsuarioData> {
+        private final Iterator<UsuarioData> usuarios;
+        private final HttpServletResponse response;
+        private final int filasPorVolcado;
+        private int filas;
+
+        IteradorConVolcado(Iterator<UsuarioData> usuarios, HttpServletResponse response, int filasPorVolcado) {
+            this.usuarios = usuarios;
+            this.response = response;
+            this.filasPorVolcado = filasPorVolcado;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return usuarios.hasNext();
+        }
+
+        @Override
+        public UsuarioData next() {
+            if (++filas % filasPorVolcado == 0) {
+                try {
+                    response.flushBuffer();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return usuarios.next();
+        }
+    }
 }
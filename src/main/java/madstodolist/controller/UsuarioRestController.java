@@ -0,0 +1,194 @@
+package madstodolist.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.UsuarioConflictoException;
+import madstodolist.service.UsuarioService;
+import madstodolist.service.UsuarioServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Map;
+
+// API JSON (v1) con las mismas operaciones sobre usuarios que UsuarioController
+@RestController
+@RequestMapping("/api/v1/usuarios")
+public class UsuarioRestController {
+
+    static final int LIMITE_MAXIMO = 1000;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ManagerUserSession managerUserSession;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Listado paginado por cursor: devuelve los usuarios con id mayor que "desde".
+    // La respuesta se escribe en streaming según se leen las filas, sin lista intermedia.
+    @GetMapping
+    public void listarUsuarios(@RequestParam(required = false) Long desde,
+                               @RequestParam(defaultValue = "50") int limite,
+                               HttpServletResponse response) throws IOException {
+        validarAdministrador();
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("usuarios");
+            // Pedimos una fila más para saber si hay página siguiente.
+            // estado = {usuarios escritos, id del último escrito, hay más}
+            long[] estado = {0, 0, 0};
+            usuarioService.recorrerUsuarios(desde, limite + 1, usuario -> {
+                if (estado[0] == limite) {
+                    estado[2] = 1;
+                    return;
+                }
+                escribirUsuario(json, usuario);
+                estado[0]++;
+                estado[1] = usuario.getId();
+            });
+            json.writeEndArray();
+            if (estado[2] == 1) {
+                json.writeNumberField("siguiente", estado[1]);
+            }
+            json.writeEndObject();
+        }
+    }
+
+    // Usuario individual con soporte de ETag / If-None-Match
+    @GetMapping("/{id}")
+    public ResponseEntity<byte[]> obtenerUsuario(@PathVariable Long id, WebRequest request) throws IOException {
+        validarAdministradorOPropietario(id);
+        UsuarioData usuario = usuarioService.findById(id);
+        if (usuario == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado");
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            escribirUsuario(json, usuario);
+        }
+        byte[] cuerpo = buffer.toByteArray();
+        String etag = "\"" + DigestUtils.md5DigestAsHex(cuerpo) + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(cuerpo);
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> crearUsuario(@RequestBody UsuarioData usuarioData) {
+        validarAdministrador();
+        UsuarioData nuevo = usuarioService.registrar(usuarioData);
+        return ResponseEntity.created(URI.create("/api/v1/usuarios/" + nuevo.getId())).build();
+    }
+
+    // Solo se cambian los campos presentes en el cuerpo; los que faltan conservan su valor.
+    // Si el cuerpo no trae versión se usa la leída aquí, así que un cambio concurrente da 409.
+    @PutMapping("/{id}")
+    public ResponseEntity<Void> actualizarUsuario(@PathVariable Long id, @RequestBody ObjectNode cambios) {
+        validarAdministrador();
+        UsuarioData usuarioData = usuarioService.findById(id);
+        if (usuarioData == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado");
+        }
+        usuarioData.setPassword(null);
+        try {
+            objectMapper.readerForUpdating(usuarioData).readValue(cambios);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Datos de usuario no válidos");
+        }
+        usuarioService.actualizarUsuario(id, usuarioData);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Bloquear (bloqueado=true) o desbloquear (bloqueado=false) un usuario
+    @PutMapping("/{id}/bloqueo")
+    public ResponseEntity<Void> cambiarBloqueo(@PathVariable Long id, @RequestParam boolean bloqueado) {
+        validarAdministrador();
+        usuarioService.cambiarEstadoBloqueoUsuario(id, bloqueado);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> eliminarUsuario(@PathVariable Long id) {
+        validarAdministrador();
+        usuarioService.eliminarUsuario(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Edición con una versión que ya no es la actual
+    @ExceptionHandler(UsuarioConflictoException.class)
+    public ResponseEntity<Map<String, String>> conflicto(UsuarioConflictoException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(UsuarioServiceException.class)
+    public ResponseEntity<Map<String, String>> errorServicio(UsuarioServiceException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    // Escritura compacta de un usuario: nunca incluye la contraseña y omite los campos nulos
+    private static void escribirUsuario(JsonGenerator json, UsuarioData usuario) {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("id", usuario.getId());
+            json.writeStringField("email", usuario.getEmail());
+            if (usuario.getNombre() != null) {
+                json.writeStringField("nombre", usuario.getNombre());
+            }
+            if (usuario.getFechaNacimiento() != null) {
+                json.writeStringField("fechaNacimiento",
+                        new java.sql.Date(usuario.getFechaNacimiento().getTime()).toLocalDate().toString());
+            }
+            json.writeBooleanField("administrador", usuario.isAdministrador());
+            json.writeBooleanField("bloqueado", usuario.isBloqueado());
+            if (usuario.getVersion() != null) {
+                json.writeNumberField("version", usuario.getVersion());
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Validar si el usuario actual es administrador
+    private void validarAdministrador() {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null || !managerUserSession.esAdministrador()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No tiene permisos para acceder a este recurso.");
+        }
+    }
+
+    // Validar si el usuario actual es administrador o el propio usuario consultado
+    private void validarAdministradorOPropietario(Long id) {
+        Long idUsuarioLogeado = managerUserSession.usuarioLogeado();
+        if (idUsuarioLogeado == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No tiene permisos para acceder a este recurso.");
+        }
+        if (!managerUserSession.esAdministrador() && !idUsuarioLogeado.equals(id)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No tiene permisos para ver esta información.");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package madstodolist.dto;
+
+import java.util.List;
+import java.util.Map;
+
+// Resultado de una búsqueda en el catálogo: página de productos y recuento por faceta
+public class BusquedaProductosData {
+
+    private List<ProductoData> productos;
+    private int totalProductos;
+    private int totalPages;
+    // Valor de la faceta -> número de productos (teniendo en cuenta el resto de filtros)
+    private Map<String, Integer> facetasDeporte;
+    private Map<String, Integer> facetasMarca;
+    private Map<String, Integer> facetasTalla;
+    // Índice de la banda de precio -> número de productos
+    private Map<Integer, Integer> facetasPrecio;
+
+    public List<ProductoData> getProductos() {
+        return productos;
+    }
+
+    public void setProductos(List<ProductoData> productos) {
+        this.productos = productos;
+    }
+
+    public int getTotalProductos() {
+        return totalProductos;
+    }
+
+    public void setTotalProductos(int totalProductos) {
+        this.totalProductos = totalProductos;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public void setTotalPages(int totalPages) {
+        this.totalPages = totalPages;
+    }
+
+    public Map<String, Integer> getFacetasDeporte() {
+        return facetasDeporte;
+    }
+
+    public void setFacetasDeporte(Map<String, Integer> facetasDeporte) {
+        this.facetasDeporte = facetasDeporte;
+    }
+
+    public Map<String, Integer> getFacetasMarca() {
+        return facetasMarca;
+    }
+
+    public void setFacetasMarca(Map<String, Integer> facetasMarca) {
+        this.facetasMarca = facetasMarca;
+    }
+
+    public Map<String, Integer> getFacetasTalla() {
+        return facetasTalla;
+    }
+
+    public void setFacetasTalla(Map<String, Integer> facetasTalla) {
+        this.facetasTalla = facetasTalla;
+    }
+
+    public Map<Integer, Integer> getFacetasPrecio() {
+        return facetasPrecio;
+    }
+
+    public void setFacetasPrecio(Map<Integer, Integer> facetasPrecio) {
+        this.facetasPrecio = facetasPrecio;
+    }
+}
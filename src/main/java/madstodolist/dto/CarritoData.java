@@ -0,0 +1,35 @@
+package madstodolist.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Data Transfer Object con el contenido del carrito de un usuario
+public class CarritoData {
+
+    private List<LineaCarritoData> lineas;
+    private int numeroArticulos;
+
+    public List<LineaCarritoData> getLineas() {
+        return lineas;
+    }
+
+    public void setLineas(List<LineaCarritoData> lineas) {
+        this.lineas = lineas;
+    }
+
+    public int getNumeroArticulos() {
+        return numeroArticulos;
+    }
+
+    public void setNumeroArticulos(int numeroArticulos) {
+        this.numeroArticulos = numeroArticulos;
+    }
+
+    public BigDecimal getTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (LineaCarritoData linea : lineas) {
+            total = total.add(linea.getSubtotal());
+        }
+        return total;
+    }
+}
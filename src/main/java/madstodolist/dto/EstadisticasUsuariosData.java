@@ -0,0 +1,67 @@
+package madstodolist.dto;
+
+import java.util.Date;
+import java.util.Map;
+
+// Data Transfer Object con las estadísticas de usuarios del panel de administración
+public class EstadisticasUsuariosData {
+
+    private long totalUsuarios;
+    private long administradores;
+    private long bloqueados;
+    // Tramo de edad -> número de usuarios (en orden de tramo)
+    private Map<String, Integer> distribucionEdades;
+    // Día (dd-MM-yyyy) -> número de altas (en orden cronológico)
+    private Map<String, Integer> altasPorDia;
+    private Date ultimaReconciliacion;
+
+    // Getters y setters
+
+    public long getTotalUsuarios() {
+        return totalUsuarios;
+    }
+
+    public void setTotalUsuarios(long totalUsuarios) {
+        this.totalUsuarios = totalUsuarios;
+    }
+
+    public long getAdministradores() {
+        return administradores;
+    }
+
+    public void setAdministradores(long administradores) {
+        this.administradores = administradores;
+    }
+
+    public long getBloqueados() {
+        return bloqueados;
+    }
+
+    public void setBloqueados(long bloqueados) {
+        this.bloqueados = bloqueados;
+    }
+
+    public Map<String, Integer> getDistribucionEdades() {
+        return distribucionEdades;
+    }
+
+    public void setDistribucionEdades(Map<String, Integer> distribucionEdades) {
+        this.distribucionEdades = distribucionEdades;
+    }
+
+    public Map<String, Integer> getAltasPorDia() {
+        return altasPorDia;
+    }
+
+    public void setAltasPorDia(Map<String, Integer> altasPorDia) {
+        this.altasPorDia = altasPorDia;
+    }
+
+    public Date getUltimaReconciliacion() {
+        return ultimaReconciliacion;
+    }
+
+    public void setUltimaReconciliacion(Date ultimaReconciliacion) {
+        this.ultimaReconciliacion = ultimaReconciliacion;
+    }
+}
@@ -0,0 +1,58 @@
+package madstodolist.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Filtros y orden de la búsqueda en el catálogo (parámetros de la URL de /productos).
+// Dentro de un mismo filtro los valores se combinan con OR y entre filtros con AND.
+public class FiltroProductosData {
+
+    public enum Orden {RELEVANCIA, PRECIO_ASC, PRECIO_DESC, POPULARIDAD}
+
+    private List<String> deporte = new ArrayList<>();
+    private List<String> marca = new ArrayList<>();
+    private List<String> talla = new ArrayList<>();
+    // Índices de las bandas de precio
+    private List<Integer> precio = new ArrayList<>();
+    private Orden orden = Orden.RELEVANCIA;
+
+    public List<String> getDeporte() {
+        return deporte;
+    }
+
+    public void setDeporte(List<String> deporte) {
+        this.deporte = deporte;
+    }
+
+    public List<String> getMarca() {
+        return marca;
+    }
+
+    public void setMarca(List<String> marca) {
+        this.marca = marca;
+    }
+
+    public List<String> getTalla() {
+        return talla;
+    }
+
+    public void setTalla(List<String> talla) {
+        this.talla = talla;
+    }
+
+    public List<Integer> getPrecio() {
+        return precio;
+    }
+
+    public void setPrecio(List<Integer> precio) {
+        this.precio = precio;
+    }
+
+    public Orden getOrden() {
+        return orden;
+    }
+
+    public void setOrden(Orden orden) {
+        this.orden = orden;
+    }
+}
@@ -0,0 +1,30 @@
+package madstodolist.dto;
+
+import java.math.BigDecimal;
+
+// Línea del carrito tal y como se muestra en la vista
+public class LineaCarritoData {
+
+    private ProductoData producto;
+    private int cantidad;
+
+    public ProductoData getProducto() {
+        return producto;
+    }
+
+    public void setProducto(ProductoData producto) {
+        this.producto = producto;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public BigDecimal getSubtotal() {
+        return producto.getPrecio().multiply(BigDecimal.valueOf(cantidad));
+    }
+}
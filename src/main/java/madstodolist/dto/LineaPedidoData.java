@@ -0,0 +1,48 @@
+package madstodolist.dto;
+
+import java.math.BigDecimal;
+
+// Línea de un pedido tal y como se muestra en la vista
+public class LineaPedidoData {
+
+    private Long productoId;
+    private String nombre;
+    private BigDecimal precio;
+    private int cantidad;
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public BigDecimal getPrecio() {
+        return precio;
+    }
+
+    public void setPrecio(BigDecimal precio) {
+        this.precio = precio;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public BigDecimal getSubtotal() {
+        return precio.multiply(BigDecimal.valueOf(cantidad));
+    }
+}
@@ -0,0 +1,100 @@
+package madstodolist.dto;
+
+// Data Transfer Object con las métricas de la escritura de pedidos por lotes
+public class MetricasPedidosData {
+
+    private long pedidosConfirmados;
+    private long lotes;
+    private int pedidosEnCola;
+    // Tamaño de los lotes y latencia del commit sobre los últimos lotes escritos
+    private double tamanoMedioLote;
+    private int tamanoMaximoLote;
+    private double latenciaP50Ms;
+    private double latenciaP95Ms;
+    private double latenciaP99Ms;
+    private double latenciaMaximaMs;
+    // Pedidos confirmados por segundo en la última ventana de medida
+    private double pedidosPorSegundo;
+
+    // Getters y setters
+
+    public long getPedidosConfirmados() {
+        return pedidosConfirmados;
+    }
+
+    public void setPedidosConfirmados(long pedidosConfirmados) {
+        this.pedidosConfirmados = pedidosConfirmados;
+    }
+
+    public long getLotes() {
+        return lotes;
+    }
+
+    public void setLotes(long lotes) {
+        this.lotes = lotes;
+    }
+
+    public int getPedidosEnCola() {
+        return pedidosEnCola;
+    }
+
+    public void setPedidosEnCola(int pedidosEnCola) {
+        this.pedidosEnCola = pedidosEnCola;
+    }
+
+    public double getTamanoMedioLote() {
+        return tamanoMedioLote;
+    }
+
+    public void setTamanoMedioLote(double tamanoMedioLote) {
+        this.tamanoMedioLote = tamanoMedioLote;
+    }
+
+    public int getTamanoMaximoLote() {
+        return tamanoMaximoLote;
+    }
+
+    public void setTamanoMaximoLote(int tamanoMaximoLote) {
+        this.tamanoMaximoLote = tamanoMaximoLote;
+    }
+
+    public double getLatenciaP50Ms() {
+        return latenciaP50Ms;
+    }
+
+    public void setLatenciaP50Ms(double latenciaP50Ms) {
+        this.latenciaP50Ms = latenciaP50Ms;
+    }
+
+    public double getLatenciaP95Ms() {
+        return latenciaP95Ms;
+    }
+
+    public void setLatenciaP95Ms(double latenciaP95Ms) {
+        this.latenciaP95Ms = latenciaP95Ms;
+    }
+
+    public double getLatenciaP99Ms() {
+        return latenciaP99Ms;
+    }
+
+    public void setLatenciaP99Ms(double latenciaP99Ms) {
+        this.latenciaP99Ms = latenciaP99Ms;
+    }
+
+    public double getLatenciaMaximaMs() {
+        return latenciaMaximaMs;
+    }
+
+    public void setLatenciaMaximaMs(double latenciaMaximaMs) {
+        this.latenciaMaximaMs = latenciaMaximaMs;
+    }
+
+    public double getPedidosPorSegundo() {
+        return pedidosPorSegundo;
+    }
+
+    public void setPedidosPorSegundo(double pedidosPorSegundo) {
+        this.pedidosPorSegundo = pedidosPorSegundo;
+    }
+}
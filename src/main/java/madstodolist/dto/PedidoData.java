@@ -0,0 +1,81 @@
+package madstodolist.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+// Data Transfer Object para la clase Pedido
+public class PedidoData {
+
+    private Long id;
+    private Long usuarioId;
+    private Date fecha;
+    private BigDecimal total;
+    private int numeroArticulos;
+    private List<LineaPedidoData> lineas;
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public void setUsuarioId(Long usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+
+    public Date getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(Date fecha) {
+        this.fecha = fecha;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public int getNumeroArticulos() {
+        return numeroArticulos;
+    }
+
+    public void setNumeroArticulos(int numeroArticulos) {
+        this.numeroArticulos = numeroArticulos;
+    }
+
+    public List<LineaPedidoData> getLineas() {
+        return lineas;
+    }
+
+    public void setLineas(List<LineaPedidoData> lineas) {
+        this.lineas = lineas;
+    }
+
+    // Dos pedidos son iguales si tienen el mismo ID
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PedidoData)) return false;
+        PedidoData that = (PedidoData) o;
+        return Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId());
+    }
+}
@@ -0,0 +1,126 @@
+package madstodolist.dto;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// Data Transfer Object para la clase Producto
+public class ProductoData {
+
+    private Long id;
+    private String nombre;
+    private String descripcion;
+    private String deporte;
+    private String marca;
+    private String talla;
+    private BigDecimal precio;
+    private String imagen;
+    private int popularidad;
+    private int stock;
+    // Unidades que se suman al stock al editar (negativo para corregir a la baja)
+    private int reponer;
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public void setDescripcion(String descripcion) {
+        this.descripcion = descripcion;
+    }
+
+    public String getDeporte() {
+        return deporte;
+    }
+
+    public void setDeporte(String deporte) {
+        this.deporte = deporte;
+    }
+
+    public String getMarca() {
+        return marca;
+    }
+
+    public void setMarca(String marca) {
+        this.marca = marca;
+    }
+
+    public String getTalla() {
+        return talla;
+    }
+
+    public void setTalla(String talla) {
+        this.talla = talla;
+    }
+
+    public BigDecimal getPrecio() {
+        return precio;
+    }
+
+    public void setPrecio(BigDecimal precio) {
+        this.precio = precio;
+    }
+
+    public String getImagen() {
+        return imagen;
+    }
+
+    public void setImagen(String imagen) {
+        this.imagen = imagen;
+    }
+
+    public int getPopularidad() {
+        return popularidad;
+    }
+
+    public void setPopularidad(int popularidad) {
+        this.popularidad = popularidad;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+
+    public int getReponer() {
+        return reponer;
+    }
+
+    public void setReponer(int reponer) {
+        this.reponer = reponer;
+    }
+
+    // Dos productos son iguales si tienen el mismo ID
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProductoData)) return false;
+        ProductoData that = (ProductoData) o;
+        return Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId());
+    }
+}
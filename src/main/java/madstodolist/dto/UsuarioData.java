@@ -16,9 +16,18 @@ public class UsuarioData {
     private Date fechaNacimiento;
     private boolean administrador;  // Campo para administrador
     private boolean bloqueado;  // Nuevo campo para controlar si el usuario está bloqueado
+    private Long version;  // Versión leída, para detectar ediciones concurrentes
 
     // Getters y setters
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,99 @@
+package madstodolist.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+// Línea persistida del carrito de un usuario. El carrito se mantiene en memoria
+// (ver CarritoService) y esta tabla solo se escribe en diferido, por lotes.
+@Entity
+@Table(name = "carrito_lineas")
+@IdClass(LineaCarrito.Clave.class)
+public class LineaCarrito implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    private int cantidad;
+
+    public LineaCarrito() {}
+
+    public LineaCarrito(Long usuarioId, Long productoId, int cantidad) {
+        this.usuarioId = usuarioId;
+        this.productoId = productoId;
+        this.cantidad = cantidad;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public void setUsuarioId(Long usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LineaCarrito that = (LineaCarrito) o;
+        return Objects.equals(usuarioId, that.usuarioId) && Objects.equals(productoId, that.productoId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(usuarioId, productoId);
+    }
+
+    // Clave primaria compuesta (usuario, producto)
+    public static class Clave implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long usuarioId;
+        private Long productoId;
+
+        public Clave() {}
+
+        public Clave(Long usuarioId, Long productoId) {
+            this.usuarioId = usuarioId;
+            this.productoId = productoId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Clave clave = (Clave) o;
+            return Objects.equals(usuarioId, clave.usuarioId) && Objects.equals(productoId, clave.productoId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(usuarioId, productoId);
+        }
+    }
+}
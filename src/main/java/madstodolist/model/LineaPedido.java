@@ -0,0 +1,118 @@
+package madstodolist.model;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// Línea de un pedido. Guarda el nombre y el precio del producto en el momento
+// de la compra para que el pedido no cambie si después se edita el catálogo.
+@Entity
+@Table(name = "pedido_lineas")
+@IdClass(LineaPedido.Clave.class)
+public class LineaPedido implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "pedido_id")
+    private Long pedidoId;
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @NotNull
+    private String nombre;
+
+    @NotNull
+    @Column(precision = 10, scale = 2)
+    private BigDecimal precio;
+
+    private int cantidad;
+
+    public LineaPedido() {}
+
+    public Long getPedidoId() {
+        return pedidoId;
+    }
+
+    public void setPedidoId(Long pedidoId) {
+        this.pedidoId = pedidoId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public BigDecimal getPrecio() {
+        return precio;
+    }
+
+    public void setPrecio(BigDecimal precio) {
+        this.precio = precio;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LineaPedido that = (LineaPedido) o;
+        return Objects.equals(pedidoId, that.pedidoId) && Objects.equals(productoId, that.productoId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pedidoId, productoId);
+    }
+
+    // Clave primaria compuesta (pedido, producto)
+    public static class Clave implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long pedidoId;
+        private Long productoId;
+
+        public Clave() {}
+
+        public Clave(Long pedidoId, Long productoId) {
+            this.pedidoId = pedidoId;
+            this.productoId = productoId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Clave clave = (Clave) o;
+            return Objects.equals(pedidoId, clave.pedidoId) && Objects.equals(productoId, clave.productoId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pedidoId, productoId);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package madstodolist.model;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Objects;
+
+// Pedido de un usuario. Los pedidos se insertan por lotes con JDBC (ver PedidoService);
+// la secuencia avanza de 100 en 100 para que cada valor reserve un bloque de ids.
+@Entity
+@Table(name = "pedidos")
+public class Pedido implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedidos_id_seq")
+    @SequenceGenerator(name = "pedidos_id_seq", sequenceName = "pedidos_id_seq", allocationSize = 100)
+    private Long id;
+
+    @NotNull
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @NotNull
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fecha;
+
+    @NotNull
+    @Column(precision = 12, scale = 2)
+    private BigDecimal total;
+
+    @Column(name = "numero_articulos")
+    private int numeroArticulos;
+
+    public Pedido() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public void setUsuarioId(Long usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+
+    public Date getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(Date fecha) {
+        this.fecha = fecha;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public int getNumeroArticulos() {
+        return numeroArticulos;
+    }
+
+    public void setNumeroArticulos(int numeroArticulos) {
+        this.numeroArticulos = numeroArticulos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Pedido pedido = (Pedido) o;
+        return id != null && Objects.equals(id, pedido.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
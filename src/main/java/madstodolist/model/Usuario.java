@@ -1,5 +1,7 @@
 package madstodolist.model;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -8,7 +10,11 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
+// Bloqueo optimista con @Version: dos ediciones concurrentes del mismo usuario se
+// detectan sin bloquear la fila. @DynamicUpdate hace que el UPDATE solo incluya las
+// columnas que han cambiado.
 @Entity
+@DynamicUpdate
 @Table(name = "usuarios")
 public class Usuario implements Serializable {
 
@@ -28,15 +34,26 @@ public class Usuario implements Serializable {
     @Temporal(TemporalType.DATE)
     private Date fechaNacimiento;
 
+    @Column(name = "fecha_alta")
+    @Temporal(TemporalType.DATE)
+    private Date fechaAlta;
+
     private boolean administrador;
     private boolean bloqueado;
 
+    @Version
+    private Long version;
+
     public Usuario() {}
 
     public Usuario(String email) {
         this.email = email;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -77,6 +94,14 @@ public class Usuario implements Serializable {
         this.fechaNacimiento = fechaNacimiento;
     }
 
+    public Date getFechaAlta() {
+        return fechaAlta;
+    }
+
+    public void setFechaAlta(Date fechaAlta) {
+        this.fechaAlta = fechaAlta;
+    }
+
     public boolean isAdministrador() {
         return administrador;
     }
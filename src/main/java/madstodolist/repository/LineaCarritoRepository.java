@@ -0,0 +1,12 @@
+package madstodolist.repository;
+
+import madstodolist.model.LineaCarrito;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LineaCarritoRepository extends JpaRepository<LineaCarrito, LineaCarrito.Clave> {
+
+    // Líneas persistidas del carrito de un usuario
+    List<LineaCarrito> findByUsuarioId(Long usuarioId);
+}
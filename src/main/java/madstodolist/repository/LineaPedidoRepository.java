@@ -0,0 +1,12 @@
+package madstodolist.repository;
+
+import madstodolist.model.LineaPedido;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LineaPedidoRepository extends JpaRepository<LineaPedido, LineaPedido.Clave> {
+
+    // Líneas de un pedido
+    List<LineaPedido> findByPedidoId(Long pedidoId);
+}
@@ -0,0 +1,12 @@
+package madstodolist.repository;
+
+import madstodolist.model.Pedido;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PedidoRepository extends JpaRepository<Pedido, Long> {
+
+    // Pedidos de un usuario, los más recientes primero
+    Page<Pedido> findByUsuarioIdOrderByIdDesc(Long usuarioId, Pageable pageable);
+}
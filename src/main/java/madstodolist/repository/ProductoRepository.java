@@ -0,0 +1,19 @@
+package madstodolist.repository;
+
+import madstodolist.model.Producto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface ProductoRepository extends JpaRepository<Producto, Long> {
+
+    // Recorre todo el catálogo sin materializar una lista (carga del índice en memoria)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select p from Producto p order by p.id")
+    Stream<Producto> streamAllOrderById();
+}
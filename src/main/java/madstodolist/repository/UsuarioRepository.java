@@ -1,14 +1,45 @@
 package madstodolist.repository;
 
 import madstodolist.model.Usuario;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import javax.persistence.QueryHint;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 // Extiende JpaRepository para habilitar paginación y ordenación
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     // Buscar un usuario por su email
     Optional<Usuario> findByEmail(String email);
+
+    // Recorre los usuarios con id mayor que el cursor, en orden de id, sin materializar una lista
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    Stream<Usuario> streamByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Página de usuarios leída en streaming (mismo orden que findAll(Pageable))
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    @Query("select u from Usuario u")
+    Stream<Usuario> streamAll(Pageable pageable);
+
+    // Contadores usados por las estadísticas del panel de administración
+    long countByAdministradorTrue();
+
+    long countByBloqueadoTrue();
+
+    // Número de usuarios agrupados por fecha de nacimiento (sin cargar las entidades)
+    @Query("select u.fechaNacimiento, count(u) from Usuario u group by u.fechaNacimiento")
+    List<Object[]> countGroupByFechaNacimiento();
+
+    // Altas desde una fecha agrupadas por día
+    @Query("select u.fechaAlta, count(u) from Usuario u where u.fechaAlta >= ?1 group by u.fechaAlta")
+    List<Object[]> countGroupByFechaAltaDesde(Date desde);
 }
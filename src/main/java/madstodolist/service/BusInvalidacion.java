@@ -0,0 +1,15 @@
+package madstodolist.service;
+
+import java.util.function.Consumer;
+
+// Bus de invalidación de los datos de usuario que cada nodo guarda en memoria
+// (rol de administrador y bloqueo de las sesiones abiertas).
+// Un cambio publicado dentro de una transacción solo se entrega si esta confirma.
+// Los oyentes reciben el id del usuario modificado, o null si deben descartar todo
+// lo que tengan guardado (por ejemplo, tras perder avisos por una desconexión).
+public interface BusInvalidacion {
+
+    void publicarCambioUsuario(Long usuarioId);
+
+    void suscribir(Consumer<Long> oyente);
+}
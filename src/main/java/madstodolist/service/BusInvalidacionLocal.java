@@ -0,0 +1,31 @@
+package madstodolist.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Bus de invalidación dentro del propio proceso: sirve cuando hay un único nodo
+// y en las pruebas. Es el que se usa si no se configura otro.
+@Service
+@ConditionalOnProperty(name = "invalidacion.bus", havingValue = "local", matchIfMissing = true)
+public class BusInvalidacionLocal implements BusInvalidacion {
+
+    private final List<Consumer<Long>> oyentes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publicarCambioUsuario(Long usuarioId) {
+        Transacciones.despuesDelCommit(() -> {
+            for (Consumer<Long> oyente : oyentes) {
+                oyente.accept(usuarioId);
+            }
+        });
+    }
+
+    @Override
+    public void suscribir(Consumer<Long> oyente) {
+        oyentes.add(oyente);
+    }
+}
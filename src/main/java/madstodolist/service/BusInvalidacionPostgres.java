@@ -0,0 +1,149 @@
+package madstodolist.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Bus de invalidación entre nodos con LISTEN/NOTIFY de PostgreSQL.
+// El NOTIFY se lanza en la misma transacción que modifica al usuario, así que
+// PostgreSQL solo lo entrega a los demás nodos si la transacción confirma.
+// Cada nodo escucha el canal con una conexión propia, fuera del pool, y un hilo
+// que se despierta en cuanto llega un aviso. Si la conexión se cae se pierden los
+// avisos de mientras tanto, por lo que al reconectar se invalida todo.
+@Service
+@ConditionalOnProperty(name = "invalidacion.bus", havingValue = "postgres")
+public class BusInvalidacionPostgres implements BusInvalidacion {
+
+    Logger logger = LoggerFactory.getLogger(BusInvalidacionPostgres.class);
+
+    static final String CANAL = "usuarios_cambios";
+
+    // Tiempo máximo de espera de avisos antes de comprobar si hay que parar
+    private static final int ESPERA_AVISOS_MS = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Value("${invalidacion.postgres.reintento-ms:5000}")
+    private long reintentoMs;
+
+    // Identifica los avisos de este nodo, que ya se han entregado localmente
+    private final String nodo = UUID.randomUUID().toString();
+    private final List<Consumer<Long>> oyentes = new CopyOnWriteArrayList<>();
+    private volatile boolean activo = true;
+    private volatile Connection conexion;
+    private Thread escucha;
+
+    @PostConstruct
+    public void iniciar() {
+        escucha = new Thread(this::escuchar, "invalidacion-escucha");
+        escucha.setDaemon(true);
+        escucha.start();
+    }
+
+    @PreDestroy
+    public void cerrar() throws InterruptedException {
+        activo = false;
+        escucha.interrupt();
+        escucha.join(ESPERA_AVISOS_MS * 2L);
+        cerrarConexion();
+    }
+
+    @Override
+    public void publicarCambioUsuario(Long usuarioId) {
+        jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", String.class, CANAL, nodo + ":" + usuarioId);
+        Transacciones.despuesDelCommit(() -> entregar(usuarioId));
+    }
+
+    @Override
+    public void suscribir(Consumer<Long> oyente) {
+        oyentes.add(oyente);
+    }
+
+    private void escuchar() {
+        while (activo) {
+            try {
+                conexion = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                        dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+                try (Statement st = conexion.createStatement()) {
+                    st.execute("LISTEN " + CANAL);
+                }
+                logger.info("Escuchando invalidaciones de usuarios en el canal {}", CANAL);
+                entregar(null);
+
+                PGConnection pg = conexion.unwrap(PGConnection.class);
+                while (activo) {
+                    PGNotification[] avisos = pg.getNotifications(ESPERA_AVISOS_MS);
+                    if (avisos != null) {
+                        for (PGNotification aviso : avisos) {
+                            procesar(aviso.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!activo) break;
+                logger.error("Perdida la conexión de invalidaciones; se reintenta en {} ms", reintentoMs, e);
+                cerrarConexion();
+                try {
+                    Thread.sleep(reintentoMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void procesar(String mensaje) {
+        int separador = mensaje.lastIndexOf(':');
+        if (separador < 0 || mensaje.substring(0, separador).equals(nodo)) {
+            return;
+        }
+        try {
+            Long usuarioId = Long.valueOf(mensaje.substring(separador + 1));
+            logger.debug("Invalidación recibida del usuario {}", usuarioId);
+            entregar(usuarioId);
+        } catch (NumberFormatException e) {
+            logger.warn("Aviso de invalidación no válido: {}", mensaje);
+        }
+    }
+
+    private void entregar(Long usuarioId) {
+        for (Consumer<Long> oyente : oyentes) {
+            oyente.accept(usuarioId);
+        }
+    }
+
+    private void cerrarConexion() {
+        Connection actual = conexion;
+        conexion = null;
+        if (actual != null) {
+            try {
+                actual.close();
+            } catch (SQLException e) {
+                logger.debug("Error al cerrar la conexión de invalidaciones", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package madstodolist.service;
+
+import madstodolist.dto.CarritoData;
+import madstodolist.dto.LineaCarritoData;
+import madstodolist.dto.ProductoData;
+import madstodolist.model.LineaCarrito;
+import madstodolist.repository.LineaCarritoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Carritos de la compra de los usuarios logeados.
+// Los carritos activos viven en memoria y las operaciones no esperan a la base
+// de datos: los cambios se marcan como pendientes y una tarea periódica los
+// escribe por lotes (write-behind). Los carritos inactivos ya persistidos se
+// expulsan de memoria y se vuelven a cargar de la base de datos al usarlos.
+@Service
+public class CarritoService {
+
+    Logger logger = LoggerFactory.getLogger(CarritoService.class);
+
+    static final int MAX_LINEAS = 100;
+    static final int MAX_CANTIDAD = 99;
+
+    @Autowired
+    private LineaCarritoRepository lineaCarritoRepository;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Tiempo sin uso tras el que un carrito se expulsa de memoria
+    @Value("${carrito.expiracion-ms:1800000}")
+    private long expiracionMs;
+
+    // Número máximo de carritos escritos en cada lote
+    @Value("${carrito.escritura.lote:500}")
+    private int tamanoLote;
+
+    private final ConcurrentHashMap<Long, Carrito> carritos = new ConcurrentHashMap<>();
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    private final Object volcado = new Object();
+    // Expulsiones hechas; una carga que se solapa con alguna se repite
+    private final AtomicLong expulsiones = new AtomicLong();
+
+    // Añade unidades de un producto al carrito; devuelve el número de artículos
+    public int anadirProducto(Long usuarioId, Long productoId, int cantidad) {
+        if (cantidad < 1 || cantidad > MAX_CANTIDAD) {
+            throw new CarritoServiceException("Cantidad no válida");
+        }
+        if (!productoService.existeProducto(productoId)) {
+            throw new CarritoServiceException("No existe producto con id " + productoId);
+        }
+        return modificar(usuarioId, carrito -> {
+            carrito.sumar(productoId, cantidad);
+            return carrito.numeroArticulos;
+        });
+    }
+
+    // Elimina un producto del carrito; devuelve el número de artículos
+    public int eliminarProducto(Long usuarioId, Long productoId) {
+        return modificar(usuarioId, carrito -> {
+            carrito.quitar(productoId);
+            return carrito.numeroArticulos;
+        });
+    }
+
+    // Quita del carrito las unidades ya compradas, respetando lo añadido después
+    public void descontarProductos(Long usuarioId, long[] productos, int[] cantidades) {
+        modificar(usuarioId, carrito -> {
+            for (int i = 0; i < productos.length; i++) {
+                carrito.restar(productos[i], cantidades[i]);
+            }
+            return carrito.numeroArticulos;
+        });
+    }
+
+    public void vaciarCarrito(Long usuarioId) {
+        modificar(usuarioId, carrito -> {
+            carrito.vaciar();
+            return 0;
+        });
+    }
+
+    // Contador del icono del carrito: se lee de memoria
+    public int numeroArticulos(Long usuarioId) {
+        Carrito carrito = obtener(usuarioId);
+        carrito.ultimoAcceso = System.currentTimeMillis();
+        return carrito.numeroArticulos;
+    }
+
+    // Contenido del carrito con los datos de cada producto
+    public CarritoData getCarrito(Long usuarioId) {
+        long[] productos;
+        int[] cantidades;
+        Carrito carrito = obtener(usuarioId);
+        synchronized (carrito) {
+            productos = Arrays.copyOf(carrito.productos, carrito.lineas);
+            cantidades = Arrays.copyOf(carrito.cantidades, carrito.lineas);
+            carrito.ultimoAcceso = System.currentTimeMillis();
+        }
+
+        List<Long> ids = new ArrayList<>(productos.length);
+        for (long productoId : productos) {
+            ids.add(productoId);
+        }
+        Map<Long, ProductoData> datosProductos = productoService.findAllById(ids);
+        List<LineaCarritoData> lineas = new ArrayList<>(productos.length);
+        int numeroArticulos = 0;
+        for (int i = 0; i < productos.length; i++) {
+            ProductoData producto = datosProductos.get(productos[i]);
+            if (producto == null) continue; // producto eliminado del catálogo
+            LineaCarritoData linea = new LineaCarritoData();
+            linea.setProducto(producto);
+            linea.setCantidad(cantidades[i]);
+            lineas.add(linea);
+            numeroArticulos += cantidades[i];
+        }
+
+        CarritoData carritoData = new CarritoData();
+        carritoData.setLineas(lineas);
+        carritoData.setNumeroArticulos(numeroArticulos);
+        return carritoData;
+    }
+
+    // Escritura diferida: persiste por lotes los carritos con cambios pendientes
+    @Scheduled(fixedDelayString = "${carrito.escritura.intervalo-ms:1000}")
+    public void volcarCambios() {
+        synchronized (volcado) {
+            // Se limita el número de lotes para no quedarse aquí con escrituras continuas
+            int lotes = pendientes.size() / tamanoLote + 1;
+            for (int i = 0; i < lotes && !pendientes.isEmpty(); i++) {
+                volcarLote();
+            }
+        }
+    }
+
+    // Expulsa de memoria los carritos inactivos que ya están persistidos
+    @Scheduled(fixedDelayString = "${carrito.expiracion.revision-ms:60000}")
+    public void expulsarInactivos() {
+        long limite = System.currentTimeMillis() - expiracionMs;
+        for (Map.Entry<Long, Carrito> entrada : carritos.entrySet()) {
+            Carrito carrito = entrada.getValue();
+            synchronized (carrito) {
+                if (carrito.ultimoAcceso < limite && carrito.version == carrito.versionPersistida) {
+                    carrito.expulsado = true;
+                    expulsiones.incrementAndGet();
+                    carritos.remove(entrada.getKey(), carrito);
+                }
+            }
+        }
+    }
+
+    // Al parar la aplicación se escriben los cambios pendientes
+    @PreDestroy
+    public void cerrar() {
+        volcarCambios();
+    }
+
+    private void volcarLote() {
+        List<Long> usuarios = new ArrayList<>(tamanoLote);
+        Iterator<Long> it = pendientes.iterator();
+        while (it.hasNext() && usuarios.size() < tamanoLote) {
+            usuarios.add(it.next());
+            it.remove();
+        }
+
+        List<Object[]> borrados = new ArrayList<>(usuarios.size());
+        List<Object[]> inserciones = new ArrayList<>();
+        long[] versiones = new long[usuarios.size()];
+        Carrito[] volcados = new Carrito[usuarios.size()];
+        for (int i = 0; i < usuarios.size(); i++) {
+            Long usuarioId = usuarios.get(i);
+            Carrito carrito = carritos.get(usuarioId);
+            if (carrito == null) continue;
+            synchronized (carrito) {
+                borrados.add(new Object[]{usuarioId});
+                for (int j = 0; j < carrito.lineas; j++) {
+                    inserciones.add(new Object[]{usuarioId, carrito.productos[j], carrito.cantidades[j]});
+                }
+                versiones[i] = carrito.version;
+                volcados[i] = carrito;
+            }
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+                jdbcTemplate.batchUpdate("DELETE FROM carrito_lineas WHERE usuario_id = ?", borrados);
+                jdbcTemplate.batchUpdate("INSERT INTO carrito_lineas (usuario_id, producto_id, cantidad) VALUES (?, ?, ?)", inserciones);
+            });
+        } catch (RuntimeException e) {
+            logger.error("Error al persistir {} carritos; se reintentará", usuarios.size(), e);
+            pendientes.addAll(usuarios);
+            throw e;
+        }
+
+        for (int i = 0; i < volcados.length; i++) {
+            Carrito carrito = volcados[i];
+            if (carrito == null) continue;
+            synchronized (carrito) {
+                carrito.versionPersistida = Math.max(carrito.versionPersistida, versiones[i]);
+            }
+        }
+        logger.debug("Persistidos {} carritos ({} líneas)", borrados.size(), inserciones.size());
+    }
+
+    // Aplica un cambio al carrito del usuario bajo su monitor y lo marca como pendiente
+    private <T> T modificar(Long usuarioId, Function<Carrito, T> cambio) {
+        if (usuarioId == null) {
+            throw new CarritoServiceException("Usuario no logeado");
+        }
+        while (true) {
+            Carrito carrito = obtener(usuarioId);
+            synchronized (carrito) {
+                // Expulsado entre la lectura del mapa y el bloqueo: se vuelve a obtener
+                if (carrito.expulsado) continue;
+                T resultado = cambio.apply(carrito);
+                carrito.version++;
+                carrito.ultimoAcceso = System.currentTimeMillis();
+                pendientes.add(usuarioId);
+                return resultado;
+            }
+        }
+    }
+
+    // Carrito en memoria del usuario; si no está se carga de la base de datos.
+    // Si mientras se leía se ha cargado, modificado, volcado y expulsado otra copia,
+    // lo leído está anticuado y no se instala: se vuelve a leer.
+    private Carrito obtener(Long usuarioId) {
+        while (true) {
+            Carrito carrito = carritos.get(usuarioId);
+            if (carrito != null) {
+                return carrito;
+            }
+            long expulsionesAntes = expulsiones.get();
+            Carrito cargado = new Carrito();
+            for (LineaCarrito linea : lineaCarritoRepository.findByUsuarioId(usuarioId)) {
+                cargado.sumar(linea.getProductoId(), linea.getCantidad());
+            }
+            cargado.ultimoAcceso = System.currentTimeMillis();
+            carrito = carritos.compute(usuarioId, (id, actual) ->
+                    actual != null ? actual : (expulsiones.get() == expulsionesAntes ? cargado : null));
+            if (carrito != null) {
+                return carrito;
+            }
+        }
+    }
+
+    // Carrito compacto: ids de producto y cantidades en arrays paralelos.
+    // Se accede siempre bajo su propio monitor salvo los campos volatile.
+    private static final class Carrito {
+        long[] productos = new long[4];
+        int[] cantidades = new int[4];
+        int lineas;
+        volatile int numeroArticulos;
+        volatile long ultimoAcceso;
+        long version;
+        long versionPersistida;
+        boolean expulsado;
+
+        void sumar(long productoId, int cantidad) {
+            int i = indice(productoId);
+            if (i < 0) {
+                if (lineas == MAX_LINEAS) {
+                    throw new CarritoServiceException("El carrito no admite más productos");
+                }
+                if (lineas == productos.length) {
+                    productos = Arrays.copyOf(productos, lineas * 2);
+                    cantidades = Arrays.copyOf(cantidades, lineas * 2);
+                }
+                i = lineas++;
+                productos[i] = productoId;
+                cantidades[i] = 0;
+            }
+            int nueva = Math.min(cantidades[i] + cantidad, MAX_CANTIDAD);
+            numeroArticulos += nueva - cantidades[i];
+            cantidades[i] = nueva;
+        }
+
+        void restar(long productoId, int cantidad) {
+            int i = indice(productoId);
+            if (i < 0) return;
+            if (cantidades[i] <= cantidad) {
+                quitar(productoId);
+            } else {
+                cantidades[i] -= cantidad;
+                numeroArticulos -= cantidad;
+            }
+        }
+
+        void quitar(long productoId) {
+            int i = indice(productoId);
+            if (i < 0) return;
+            numeroArticulos -= cantidades[i];
+            lineas--;
+            productos[i] = productos[lineas];
+            cantidades[i] = cantidades[lineas];
+        }
+
+        void vaciar() {
+            lineas = 0;
+            numeroArticulos = 0;
+        }
+
+        int indice(long productoId) {
+            for (int i = 0; i < lineas; i++) {
+                if (productos[i] == productoId) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package madstodolist.service;
+
+public class CarritoServiceException extends RuntimeException {
+
+    public CarritoServiceException(String message) {
+        super(message);
+    }
+}
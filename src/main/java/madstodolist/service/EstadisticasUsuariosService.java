@@ -0,0 +1,366 @@
+package madstodolist.service;
+
+import madstodolist.dto.EstadisticasUsuariosData;
+import madstodolist.model.Usuario;
+import madstodolist.repository.UsuarioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Estadísticas de usuarios para el panel de administración.
+// Se calculan una vez al arrancar con consultas agregadas y después se
+// actualizan de forma incremental desde UsuarioService. Las lecturas no
+// acceden a la base de datos; una reconciliación periódica corrige la deriva.
+// La reconciliación lee todos los contadores de una misma foto de la base de datos
+// y después vuelve a aplicar los cambios confirmados tras tomarla, para no perder
+// ni contar dos veces los que se cruzan con ella. Las altas por día también se
+// reconstruyen en cada reconciliación a partir de la fecha de alta de los usuarios.
+@Service
+public class EstadisticasUsuariosService {
+
+    Logger logger = LoggerFactory.getLogger(EstadisticasUsuariosService.class);
+
+    // Límite inferior (en años) de cada tramo de edad; el último tramo es "sin fecha"
+    static final int[] TRAMOS_EDAD = {0, 18, 25, 35, 45, 55, 65};
+    static final int SIN_FECHA = TRAMOS_EDAD.length;
+
+    // Número de días de altas que se conservan
+    static final int DIAS_ALTAS = 30;
+
+    private static final DateTimeFormatter FORMATO_DIA = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Protege los contadores y la coordinación entre la reconciliación y los commits
+    private final ReentrantLock contadores = new ReentrantLock();
+    private final Condition fotoTerminada = contadores.newCondition();
+    private final Condition commitsTerminados = contadores.newCondition();
+    private long totalUsuarios;
+    private long administradores;
+    private long bloqueados;
+    private final int[] edades = new int[TRAMOS_EDAD.length + 1];
+    // Buffer circular indexado por día (epochDay % DIAS_ALTAS)
+    private final int[] altasPorDia = new int[DIAS_ALTAS];
+    private long ultimoDiaAltas = LocalDate.now().toEpochDay();
+    private Date ultimaReconciliacion;
+    // Transacciones con cambios que están confirmando (entre beforeCommit y afterCompletion)
+    private int confirmando;
+    // Mientras se toma la foto de la reconciliación no se deja empezar ningún commit
+    private boolean tomandoFoto;
+    // Cambios confirmados después de la foto; solo existe durante una reconciliación
+    private List<Cambio> diferidos;
+    // Evita que se solapen la reconciliación del arranque y la periódica
+    private final ReentrantLock reconciliacion = new ReentrantLock();
+
+    // Estado de un usuario relevante para las estadísticas, capturado antes
+    // de modificar la entidad para poder descontarlo después
+    public static final class Muestra {
+        final boolean administrador;
+        final boolean bloqueado;
+        final int tramoEdad;
+
+        private Muestra(boolean administrador, boolean bloqueado, int tramoEdad) {
+            this.administrador = administrador;
+            this.bloqueado = bloqueado;
+            this.tramoEdad = tramoEdad;
+        }
+
+        public static Muestra de(Usuario usuario) {
+            return new Muestra(usuario.isAdministrador(), usuario.isBloqueado(),
+                    tramoEdad(usuario.getFechaNacimiento(), LocalDate.now()));
+        }
+    }
+
+    private static final class Cambio {
+        final Muestra muestra;
+        final int signo;
+        final boolean alta;
+
+        Cambio(Muestra muestra, int signo, boolean alta) {
+            this.muestra = muestra;
+            this.signo = signo;
+            this.alta = alta;
+        }
+    }
+
+    // Recalcula todas las estadísticas a partir de la base de datos
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${estadisticas.reconciliacion.ms:600000}",
+            fixedDelayString = "${estadisticas.reconciliacion.ms:600000}")
+    public void reconciliar() {
+        reconciliacion.lock();
+        try {
+            long[] totales = new long[3];
+            int[] nuevasEdades = new int[edades.length];
+            int[] nuevasAltas = new int[DIAS_ALTAS];
+            long[] diaFoto = new long[1];
+            TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+            transaccion.setReadOnly(true);
+            transaccion.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            transaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                // La conexión ya está tomada al empezar la transacción, así que esperar
+                // aquí a los commits no compite con ellos por el pool
+                transaccion.executeWithoutResult(estado -> {
+                    esperarCommits();
+                    // La primera lectura fija la foto; a partir de aquí los commits pueden seguir
+                    totales[0] = usuarioRepository.count();
+                    finFoto();
+                    totales[1] = usuarioRepository.countByAdministradorTrue();
+                    totales[2] = usuarioRepository.countByBloqueadoTrue();
+                    LocalDate hoy = LocalDate.now();
+                    for (Object[] fila : usuarioRepository.countGroupByFechaNacimiento()) {
+                        nuevasEdades[tramoEdad((Date) fila[0], hoy)] += ((Number) fila[1]).intValue();
+                    }
+                    diaFoto[0] = hoy.toEpochDay();
+                    Date desde = java.sql.Date.valueOf(hoy.minusDays(DIAS_ALTAS - 1));
+                    for (Object[] fila : usuarioRepository.countGroupByFechaAltaDesde(desde)) {
+                        long dia = aFecha((Date) fila[0]).toEpochDay();
+                        if (dia <= diaFoto[0]) {
+                            nuevasAltas[(int) (dia % DIAS_ALTAS)] += ((Number) fila[1]).intValue();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                contadores.lock();
+                try {
+                    tomandoFoto = false;
+                    diferidos = null;
+                    fotoTerminada.signalAll();
+                } finally {
+                    contadores.unlock();
+                }
+                throw e;
+            }
+
+            contadores.lock();
+            try {
+                long total = totalUsuarios, admins = administradores, bloq = bloqueados;
+                totalUsuarios = totales[0];
+                administradores = totales[1];
+                bloqueados = totales[2];
+                System.arraycopy(nuevasEdades, 0, edades, 0, edades.length);
+                System.arraycopy(nuevasAltas, 0, altasPorDia, 0, DIAS_ALTAS);
+                ultimoDiaAltas = diaFoto[0];
+                for (Cambio cambio : diferidos) {
+                    aplicar(cambio);
+                }
+                diferidos = null;
+                if (ultimaReconciliacion != null && (total != totalUsuarios || admins != administradores || bloq != bloqueados)) {
+                    logger.warn("Corregida deriva en estadísticas de usuarios: total {} -> {}, administradores {} -> {}, bloqueados {} -> {}",
+                            total, totalUsuarios, admins, administradores, bloq, bloqueados);
+                }
+                ultimaReconciliacion = new Date();
+            } finally {
+                contadores.unlock();
+            }
+        } finally {
+            reconciliacion.unlock();
+        }
+    }
+
+    // Métodos llamados desde UsuarioService. Si hay una transacción activa
+    // el cambio se aplica solo cuando ésta hace commit.
+
+    public void registrarAlta(Muestra muestra) {
+        despuesDelCommit(new Cambio(muestra, 1, true));
+    }
+
+    public void registrarBaja(Muestra muestra) {
+        despuesDelCommit(new Cambio(muestra, -1, false));
+    }
+
+    public void registrarCambio(Muestra antes, Muestra despues) {
+        despuesDelCommit(new Cambio(antes, -1, false), new Cambio(despues, 1, false));
+    }
+
+    // Lectura de las estadísticas: no depende del número de usuarios
+    public EstadisticasUsuariosData getEstadisticas() {
+        contadores.lock();
+        try {
+            return leerEstadisticas();
+        } finally {
+            contadores.unlock();
+        }
+    }
+
+    private EstadisticasUsuariosData leerEstadisticas() {
+        EstadisticasUsuariosData data = new EstadisticasUsuariosData();
+        data.setTotalUsuarios(totalUsuarios);
+        data.setAdministradores(administradores);
+        data.setBloqueados(bloqueados);
+        data.setUltimaReconciliacion(ultimaReconciliacion);
+
+        Map<String, Integer> distribucion = new LinkedHashMap<>();
+        for (int i = 0; i < edades.length; i++) {
+            distribucion.put(etiquetaTramo(i), edades[i]);
+        }
+        data.setDistribucionEdades(distribucion);
+
+        long hoy = LocalDate.now().toEpochDay();
+        avanzarDia(hoy);
+        Map<String, Integer> altas = new LinkedHashMap<>();
+        for (long dia = hoy - DIAS_ALTAS + 1; dia <= hoy; dia++) {
+            altas.put(LocalDate.ofEpochDay(dia).format(FORMATO_DIA), altasPorDia[(int) (dia % DIAS_ALTAS)]);
+        }
+        data.setAltasPorDia(altas);
+        return data;
+    }
+
+    // Se llama con el cerrojo de los contadores tomado
+    private void aplicarConfirmado(Cambio[] cambios) {
+        for (Cambio cambio : cambios) {
+            aplicar(cambio);
+        }
+        if (diferidos != null) {
+            Collections.addAll(diferidos, cambios);
+        }
+    }
+
+    private void aplicar(Cambio cambio) {
+        Muestra muestra = cambio.muestra;
+        totalUsuarios += cambio.signo;
+        if (muestra.administrador) administradores += cambio.signo;
+        if (muestra.bloqueado) bloqueados += cambio.signo;
+        edades[muestra.tramoEdad] += cambio.signo;
+        if (cambio.alta) {
+            long dia = LocalDate.now().toEpochDay();
+            avanzarDia(dia);
+            altasPorDia[(int) (dia % DIAS_ALTAS)]++;
+        }
+    }
+
+    // Impide empezar nuevos commits y espera a que terminen los que están en curso: sus
+    // cambios quedan aplicados en memoria y también en la foto que se va a leer
+    private void esperarCommits() {
+        contadores.lock();
+        try {
+            tomandoFoto = true;
+            while (confirmando > 0) {
+                commitsTerminados.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliación de estadísticas interrumpida", e);
+        } finally {
+            contadores.unlock();
+        }
+    }
+
+    // Deja seguir a los commits y empieza a guardar los cambios posteriores a la foto
+    private void finFoto() {
+        contadores.lock();
+        try {
+            tomandoFoto = false;
+            diferidos = new ArrayList<>();
+            fotoTerminada.signalAll();
+        } finally {
+            contadores.unlock();
+        }
+    }
+
+    // Pone a cero los huecos del buffer circular correspondientes a días sin altas
+    private void avanzarDia(long dia) {
+        if (dia <= ultimoDiaAltas) return;
+        long desde = Math.max(ultimoDiaAltas + 1, dia - DIAS_ALTAS + 1);
+        for (long d = desde; d <= dia; d++) {
+            altasPorDia[(int) (d % DIAS_ALTAS)] = 0;
+        }
+        ultimoDiaAltas = dia;
+    }
+
+    // Aplica los cambios cuando la transacción hace commit. El commit no empieza mientras
+    // la reconciliación toma su foto, y esta espera a los commits que ya han empezado.
+    private void despuesDelCommit(Cambio... cambios) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            contadores.lock();
+            try {
+                aplicarConfirmado(cambios);
+            } finally {
+                contadores.unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean contado;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                contadores.lock();
+                try {
+                    while (tomandoFoto) {
+                        fotoTerminada.awaitUninterruptibly();
+                    }
+                    confirmando++;
+                    contado = true;
+                } finally {
+                    contadores.unlock();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                contadores.lock();
+                try {
+                    if (contado && --confirmando == 0) {
+                        commitsTerminados.signalAll();
+                    }
+                    if (status == STATUS_COMMITTED) {
+                        aplicarConfirmado(cambios);
+                    }
+                } finally {
+                    contadores.unlock();
+                }
+            }
+        });
+    }
+
+    static int tramoEdad(Date fechaNacimiento, LocalDate hoy) {
+        if (fechaNacimiento == null) return SIN_FECHA;
+        LocalDate nacimiento = aFecha(fechaNacimiento);
+        int edad = Math.max(0, Period.between(nacimiento, hoy).getYears());
+        int tramo = 0;
+        while (tramo + 1 < TRAMOS_EDAD.length && edad >= TRAMOS_EDAD[tramo + 1]) {
+            tramo++;
+        }
+        return tramo;
+    }
+
+    // java.sql.Date no admite toInstant(), así que se convierte desde los milisegundos
+    private static LocalDate aFecha(Date fecha) {
+        return Instant.ofEpochMilli(fecha.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static String etiquetaTramo(int tramo) {
+        if (tramo == SIN_FECHA) return "Sin fecha";
+        if (tramo == TRAMOS_EDAD.length - 1) return TRAMOS_EDAD[tramo] + "+";
+        return TRAMOS_EDAD[tramo] + "-" + (TRAMOS_EDAD[tramo + 1] - 1);
+    }
+}
@@ -0,0 +1,95 @@
+package madstodolist.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rol de administrador y bloqueo de los usuarios con sesión abierta en este nodo.
+// Se lee de la base de datos la primera vez y se mantiene en memoria hasta que el
+// bus de invalidación avisa de un cambio del usuario, así las sesiones ven las
+// revocaciones y bloqueos al momento sin consultar la base de datos en cada petición.
+@Service
+public class EstadoUsuariosService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    private final ConcurrentHashMap<Long, Estado> estados = new ConcurrentHashMap<>();
+    // Invalidaciones de cada usuario y de todos a la vez: una lectura de la base de datos
+    // solo se guarda si no ha habido ninguna desde que empezó
+    private final ConcurrentHashMap<Long, Long> generaciones = new ConcurrentHashMap<>();
+    private final AtomicLong invalidacionesGlobales = new AtomicLong();
+
+    @PostConstruct
+    public void iniciar() {
+        busInvalidacion.suscribir(this::invalidar);
+    }
+
+    // Estado actual del usuario, o null si ya no existe
+    public Estado estado(Long usuarioId) {
+        Estado estado = estados.get(usuarioId);
+        if (estado != null) {
+            return estado;
+        }
+        long global = invalidacionesGlobales.get();
+        long generacion = generaciones.getOrDefault(usuarioId, 0L);
+        List<Estado> filas = jdbcTemplate.query("SELECT administrador, bloqueado FROM usuarios WHERE id = ?",
+                (rs, i) -> new Estado(rs.getBoolean(1), rs.getBoolean(2)), usuarioId);
+        if (filas.isEmpty()) {
+            return null;
+        }
+        Estado leido = filas.get(0);
+        // La comprobación y el guardado son atómicos respecto a invalidar() del mismo usuario,
+        // que también pasa por compute() sobre la misma clave
+        estados.compute(usuarioId, (id, actual) -> {
+            if (actual != null) {
+                return actual;
+            }
+            boolean vigente = global == invalidacionesGlobales.get()
+                    && generacion == generaciones.getOrDefault(id, 0L);
+            return vigente ? leido : null;
+        });
+        return leido;
+    }
+
+    // Descarta el estado guardado de un usuario (o de todos si usuarioId es null)
+    public void invalidar(Long usuarioId) {
+        if (usuarioId == null) {
+            // Primero la generación global: una lectura que se guarde después la verá cambiada,
+            // y las guardadas antes se borran con clear()
+            invalidacionesGlobales.incrementAndGet();
+            estados.clear();
+        } else {
+            estados.compute(usuarioId, (id, actual) -> {
+                generaciones.merge(id, 1L, Long::sum);
+                return null;
+            });
+        }
+    }
+
+    public static final class Estado {
+        private final boolean administrador;
+        private final boolean bloqueado;
+
+        Estado(boolean administrador, boolean bloqueado) {
+            this.administrador = administrador;
+            this.bloqueado = bloqueado;
+        }
+
+        public boolean isAdministrador() {
+            return administrador;
+        }
+
+        public boolean isBloqueado() {
+            return bloqueado;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package madstodolist.service;
+
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.model.Producto;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Índice en memoria del catálogo para la búsqueda por facetas.
+// Los productos se guardan por columnas en arrays de primitivos (una fila por
+// producto, en orden de id) y cada valor de deporte, marca, talla y banda de
+// precio tiene un bitmap con las filas que lo contienen. Los filtros se
+// resuelven con AND/OR de bitmaps y los recuentos de facetas con cardinalidades.
+public class IndiceCatalogo {
+
+    // Límite inferior (en céntimos) de cada banda de precio
+    public static final int[] BANDAS_PRECIO = {0, 2500, 5000, 10000, 20000};
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Datos datos = new Datos(1024);
+    // Altas, cambios y bajas llegados durante una reconstrucción, para aplicarlos
+    // también a los datos nuevos; solo existe mientras se reconstruye
+    private List<Cambio> diario;
+
+    // Resultado de una búsqueda: ids de la página pedida y recuentos de facetas
+    public static class Resultado {
+        public long[] ids;
+        public int total;
+        public Map<String, Integer> facetasDeporte;
+        public Map<String, Integer> facetasMarca;
+        public Map<String, Integer> facetasTalla;
+        public Map<Integer, Integer> facetasPrecio;
+    }
+
+    // Empieza a anotar los cambios que lleguen mientras se leen los productos
+    // para una reconstrucción. Hay que llamarlo antes de empezar a leerlos.
+    public void empezarReconstruccion() {
+        lock.writeLock().lock();
+        try {
+            diario = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sustituye el contenido del índice. Los productos deben llegar en orden de id.
+    // Los cambios anotados desde empezarReconstruccion() se vuelven a aplicar sobre
+    // los datos nuevos; devuelve false si alguno no se ha podido aplicar por llegar
+    // fuera de orden, en cuyo caso hay que reconstruir otra vez.
+    public boolean reconstruir(Iterator<Producto> productos, int capacidad) {
+        Datos nuevos = new Datos(Math.max(capacidad, 1024));
+        while (productos.hasNext()) {
+            Producto producto = productos.next();
+            nuevos.rellenar(nuevos.nuevaFila(producto.getId()), producto);
+        }
+        lock.writeLock().lock();
+        try {
+            boolean completo = true;
+            if (diario != null) {
+                for (Cambio cambio : diario) {
+                    if (cambio.producto == null) {
+                        eliminar(nuevos, cambio.id);
+                    } else {
+                        completo &= indexar(nuevos, cambio.producto);
+                    }
+                }
+                diario = null;
+            }
+            datos = nuevos;
+            return completo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Añade o actualiza un producto. Devuelve false si es un producto nuevo cuyo id
+    // no es mayor que los ya indexados; en ese caso hay que reconstruir el índice.
+    public boolean indexar(Producto producto) {
+        lock.writeLock().lock();
+        try {
+            if (diario != null) {
+                diario.add(new Cambio(producto.getId(), producto));
+            }
+            return indexar(datos, producto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long idProducto) {
+        lock.writeLock().lock();
+        try {
+            if (diario != null) {
+                diario.add(new Cambio(idProducto, null));
+            }
+            eliminar(datos, idProducto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Suma a la popularidad de cada producto la cantidad indicada
+    public void sumarPopularidad(Map<Long, Integer> incrementos) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Integer> incremento : incrementos.entrySet()) {
+                int fila = datos.buscarFila(incremento.getKey());
+                if (fila >= 0) {
+                    datos.popularidades[fila] += incremento.getValue();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // La popularidad de un producto ya indexado solo cambia con sumarPopularidad
+    // (o al reconstruir), para no pisar los incrementos con un valor leído antes
+    private static boolean indexar(Datos d, Producto producto) {
+        int fila = d.buscarFila(producto.getId());
+        if (fila >= 0) {
+            int popularidad = d.popularidades[fila];
+            d.quitar(fila);
+            d.rellenar(fila, producto);
+            d.popularidades[fila] = popularidad;
+        } else if (d.filas > 0 && d.ids[d.filas - 1] >= producto.getId()) {
+            return false;
+        } else {
+            d.rellenar(d.nuevaFila(producto.getId()), producto);
+        }
+        return true;
+    }
+
+    private static void eliminar(Datos d, Long idProducto) {
+        int fila = d.buscarFila(idProducto);
+        if (fila >= 0) {
+            d.quitar(fila);
+        }
+    }
+
+    public boolean contiene(Long idProducto) {
+        lock.readLock().lock();
+        try {
+            return datos.buscarFila(idProducto) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNumeroProductos() {
+        lock.readLock().lock();
+        try {
+            return datos.vivos.cardinalidad();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Resultado buscar(FiltroProductosData filtro, int page, int size) {
+        lock.readLock().lock();
+        try {
+            Datos d = datos;
+            Bitmap filtroDeporte = d.deporte.union(filtro.getDeporte());
+            Bitmap filtroMarca = d.marca.union(filtro.getMarca());
+            Bitmap filtroTalla = d.talla.union(filtro.getTalla());
+            Bitmap filtroPrecio = null;
+            if (!filtro.getPrecio().isEmpty()) {
+                filtroPrecio = new Bitmap();
+                for (Integer banda : filtro.getPrecio()) {
+                    if (banda != null && banda >= 0 && banda < BANDAS_PRECIO.length) {
+                        filtroPrecio.or(d.bandas[banda]);
+                    }
+                }
+            }
+
+            Resultado resultado = new Resultado();
+            // Cada faceta se cuenta aplicando todos los filtros salvo el suyo
+            Bitmap sinDeporte = interseccion(d.vivos, filtroMarca, filtroTalla, filtroPrecio);
+            resultado.facetasDeporte = d.deporte.recuentos(sinDeporte, filtro.getDeporte());
+            Bitmap sinMarca = interseccion(d.vivos, filtroDeporte, filtroTalla, filtroPrecio);
+            resultado.facetasMarca = d.marca.recuentos(sinMarca, filtro.getMarca());
+            Bitmap sinTalla = interseccion(d.vivos, filtroDeporte, filtroMarca, filtroPrecio);
+            resultado.facetasTalla = d.talla.recuentos(sinTalla, filtro.getTalla());
+            Bitmap sinPrecio = interseccion(d.vivos, filtroDeporte, filtroMarca, filtroTalla);
+            resultado.facetasPrecio = new LinkedHashMap<>();
+            for (int banda = 0; banda < BANDAS_PRECIO.length; banda++) {
+                resultado.facetasPrecio.put(banda, sinPrecio.cardinalidadInterseccion(d.bandas[banda]));
+            }
+
+            if (filtroPrecio != null) {
+                sinPrecio.and(filtroPrecio);
+            }
+            int[] filas = sinPrecio.filas();
+            resultado.total = filas.length;
+            resultado.ids = pagina(d, filas, filtro.getOrden(), page, size);
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Bitmap interseccion(Bitmap base, Bitmap... filtros) {
+        Bitmap resultado = base.copia();
+        for (Bitmap filtro : filtros) {
+            if (filtro != null) {
+                resultado.and(filtro);
+            }
+        }
+        return resultado;
+    }
+
+    // Ordena las filas por la clave pedida (empaquetando clave y fila en un long
+    // para trabajar con arrays de primitivos) y devuelve los ids de la página.
+    // Solo se seleccionan las "hasta" primeras claves con un montículo acotado,
+    // así que las primeras páginas no requieren ordenar todo el resultado.
+    private static long[] pagina(Datos d, int[] filas, FiltroProductosData.Orden orden, int page, int size) {
+        int desde = (int) Math.min((long) page * size, filas.length);
+        int hasta = Math.min(desde + size, filas.length);
+        long[] ids = new long[hasta - desde];
+        if (orden == null || orden == FiltroProductosData.Orden.RELEVANCIA) {
+            for (int i = desde; i < hasta; i++) {
+                ids[i - desde] = d.ids[filas[i]];
+            }
+            return ids;
+        }
+        long[] primeras = new long[hasta];
+        int n = 0;
+        for (int fila : filas) {
+            int clave;
+            switch (orden) {
+                case PRECIO_ASC:
+                    clave = d.precios[fila];
+                    break;
+                case PRECIO_DESC:
+                    clave = -d.precios[fila];
+                    break;
+                default:
+                    clave = -d.popularidades[fila];
+            }
+            long empaquetada = ((long) clave << 32) | fila;
+            if (n < hasta) {
+                primeras[n] = empaquetada;
+                subir(primeras, n++);
+            } else if (hasta > 0 && empaquetada < primeras[0]) {
+                primeras[0] = empaquetada;
+                bajar(primeras, hasta);
+            }
+        }
+        Arrays.sort(primeras, 0, n);
+        for (int i = desde; i < hasta; i++) {
+            ids[i - desde] = d.ids[(int) primeras[i]];
+        }
+        return ids;
+    }
+
+    // Operaciones de un montículo de máximos sobre un array de long
+    private static void subir(long[] monticulo, int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (monticulo[padre] >= monticulo[i]) return;
+            long tmp = monticulo[padre];
+            monticulo[padre] = monticulo[i];
+            monticulo[i] = tmp;
+            i = padre;
+        }
+    }
+
+    private static void bajar(long[] monticulo, int n) {
+        int i = 0;
+        while (true) {
+            int mayor = i;
+            int izq = 2 * i + 1;
+            int der = izq + 1;
+            if (izq < n && monticulo[izq] > monticulo[mayor]) mayor = izq;
+            if (der < n && monticulo[der] > monticulo[mayor]) mayor = der;
+            if (mayor == i) return;
+            long tmp = monticulo[mayor];
+            monticulo[mayor] = monticulo[i];
+            monticulo[i] = tmp;
+            i = mayor;
+        }
+    }
+
+    static int bandaPrecio(int centimos) {
+        int banda = 0;
+        while (banda + 1 < BANDAS_PRECIO.length && centimos >= BANDAS_PRECIO[banda + 1]) {
+            banda++;
+        }
+        return banda;
+    }
+
+    // Alta o cambio (con el producto) o baja (sin él) anotada durante una reconstrucción
+    private static final class Cambio {
+        final Long id;
+        final Producto producto;
+
+        Cambio(Long id, Producto producto) {
+            this.id = id;
+            this.producto = producto;
+        }
+    }
+
+    // Columnas y bitmaps del índice
+    private static final class Datos {
+        long[] ids;
+        int[] precios;
+        int[] popularidades;
+        short[] deportes;
+        short[] marcas;
+        short[] tallas;
+        int filas;
+
+        final Bitmap vivos = new Bitmap();
+        final Dimension deporte = new Dimension();
+        final Dimension marca = new Dimension();
+        final Dimension talla = new Dimension();
+        final Bitmap[] bandas = new Bitmap[BANDAS_PRECIO.length];
+
+        Datos(int capacidad) {
+            ids = new long[capacidad];
+            precios = new int[capacidad];
+            popularidades = new int[capacidad];
+            deportes = new short[capacidad];
+            marcas = new short[capacidad];
+            tallas = new short[capacidad];
+            for (int i = 0; i < bandas.length; i++) {
+                bandas[i] = new Bitmap();
+            }
+        }
+
+        // Las filas están en orden de id, así que basta una búsqueda binaria
+        int buscarFila(long id) {
+            int fila = Arrays.binarySearch(ids, 0, filas, id);
+            return fila >= 0 && vivos.get(fila) ? fila : -1;
+        }
+
+        int nuevaFila(long id) {
+            if (filas == ids.length) {
+                int capacidad = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, capacidad);
+                precios = Arrays.copyOf(precios, capacidad);
+                popularidades = Arrays.copyOf(popularidades, capacidad);
+                deportes = Arrays.copyOf(deportes, capacidad);
+                marcas = Arrays.copyOf(marcas, capacidad);
+                tallas = Arrays.copyOf(tallas, capacidad);
+            }
+            ids[filas] = id;
+            return filas++;
+        }
+
+        void rellenar(int fila, Producto producto) {
+            int centimos = producto.getPrecio().movePointRight(2).intValue();
+            precios[fila] = centimos;
+            popularidades[fila] = producto.getPopularidad();
+            deportes[fila] = deporte.indexar(producto.getDeporte(), fila);
+            marcas[fila] = marca.indexar(producto.getMarca(), fila);
+            tallas[fila] = talla.indexar(producto.getTalla(), fila);
+            bandas[bandaPrecio(centimos)].set(fila);
+            vivos.set(fila);
+        }
+
+        void quitar(int fila) {
+            vivos.clear(fila);
+            deporte.quitar(deportes[fila], fila);
+            marca.quitar(marcas[fila], fila);
+            talla.quitar(tallas[fila], fila);
+            bandas[bandaPrecio(precios[fila])].clear(fila);
+        }
+    }
+
+    // Diccionario de valores de una faceta (valor <-> código) con un bitmap por valor
+    private static final class Dimension {
+        static final short SIN_VALOR = -1;
+
+        final Map<String, Short> codigos = new HashMap<>();
+        final List<String> valores = new ArrayList<>();
+        final List<Bitmap> bitmaps = new ArrayList<>();
+
+        short indexar(String valor, int fila) {
+            if (valor == null || valor.isEmpty()) return SIN_VALOR;
+            Short codigo = codigos.get(valor);
+            if (codigo == null) {
+                if (valores.size() == Short.MAX_VALUE) {
+                    throw new IllegalStateException("Demasiados valores distintos en una faceta del catálogo");
+                }
+                codigo = (short) valores.size();
+                codigos.put(valor, codigo);
+                valores.add(valor);
+                bitmaps.add(new Bitmap());
+            }
+            bitmaps.get(codigo).set(fila);
+            return codigo;
+        }
+
+        void quitar(short codigo, int fila) {
+            if (codigo != SIN_VALOR) {
+                bitmaps.get(codigo).clear(fila);
+            }
+        }
+
+        // OR de los bitmaps de los valores seleccionados; null si no hay filtro
+        Bitmap union(List<String> seleccion) {
+            if (seleccion == null || seleccion.isEmpty()) return null;
+            Bitmap union = new Bitmap();
+            for (String valor : seleccion) {
+                Short codigo = codigos.get(valor);
+                if (codigo != null) {
+                    union.or(bitmaps.get(codigo));
+                }
+            }
+            return union;
+        }
+
+        // Recuento por valor (ordenado alfabéticamente); se omiten los valores
+        // sin productos salvo que estén seleccionados
+        Map<String, Integer> recuentos(Bitmap base, List<String> seleccion) {
+            Map<String, Integer> recuentos = new TreeMap<>();
+            for (int codigo = 0; codigo < valores.size(); codigo++) {
+                int n = base.cardinalidadInterseccion(bitmaps.get(codigo));
+                if (n > 0 || seleccion.contains(valores.get(codigo))) {
+                    recuentos.put(valores.get(codigo), n);
+                }
+            }
+            return recuentos;
+        }
+    }
+
+    // Bitmap dividido en bloques de 4096 bits; los bloques vacíos no ocupan
+    // memoria, de modo que los valores poco frecuentes o agrupados son compactos
+    static final class Bitmap {
+        private static final int PALABRAS_BLOQUE = 64;
+        private static final long[][] VACIO = new long[0][];
+
+        private long[][] bloques = VACIO;
+
+        void set(int bit) {
+            int b = bit >>> 12;
+            if (b >= bloques.length) {
+                bloques = Arrays.copyOf(bloques, Math.max(b + 1, bloques.length * 2));
+            }
+            if (bloques[b] == null) {
+                bloques[b] = new long[PALABRAS_BLOQUE];
+            }
+            bloques[b][(bit >>> 6) & 63] |= 1L << bit;
+        }
+
+        void clear(int bit) {
+            int b = bit >>> 12;
+            if (b < bloques.length && bloques[b] != null) {
+                bloques[b][(bit >>> 6) & 63] &= ~(1L << bit);
+            }
+        }
+
+        boolean get(int bit) {
+            int b = bit >>> 12;
+            return b < bloques.length && bloques[b] != null && (bloques[b][(bit >>> 6) & 63] & (1L << bit)) != 0;
+        }
+
+        Bitmap copia() {
+            Bitmap copia = new Bitmap();
+            copia.bloques = new long[bloques.length][];
+            for (int b = 0; b < bloques.length; b++) {
+                if (bloques[b] != null) {
+                    copia.bloques[b] = bloques[b].clone();
+                }
+            }
+            return copia;
+        }
+
+        void and(Bitmap otro) {
+            for (int b = 0; b < bloques.length; b++) {
+                if (bloques[b] == null) continue;
+                if (b >= otro.bloques.length || otro.bloques[b] == null) {
+                    bloques[b] = null;
+                    continue;
+                }
+                long[] palabras = bloques[b];
+                long[] otras = otro.bloques[b];
+                for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                    palabras[i] &= otras[i];
+                }
+            }
+        }
+
+        void or(Bitmap otro) {
+            if (otro.bloques.length > bloques.length) {
+                bloques = Arrays.copyOf(bloques, otro.bloques.length);
+            }
+            for (int b = 0; b < otro.bloques.length; b++) {
+                if (otro.bloques[b] == null) continue;
+                if (bloques[b] == null) {
+                    bloques[b] = otro.bloques[b].clone();
+                    continue;
+                }
+                long[] palabras = bloques[b];
+                long[] otras = otro.bloques[b];
+                for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                    palabras[i] |= otras[i];
+                }
+            }
+        }
+
+        int cardinalidad() {
+            int n = 0;
+            for (long[] bloque : bloques) {
+                if (bloque == null) continue;
+                for (long palabra : bloque) {
+                    n += Long.bitCount(palabra);
+                }
+            }
+            return n;
+        }
+
+        int cardinalidadInterseccion(Bitmap otro) {
+            int n = 0;
+            int limite = Math.min(bloques.length, otro.bloques.length);
+            for (int b = 0; b < limite; b++) {
+                long[] palabras = bloques[b];
+                long[] otras = otro.bloques[b];
+                if (palabras == null || otras == null) continue;
+                for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                    n += Long.bitCount(palabras[i] & otras[i]);
+                }
+            }
+            return n;
+        }
+
+        // Posiciones de los bits activos en orden creciente
+        int[] filas() {
+            int[] filas = new int[cardinalidad()];
+            int n = 0;
+            for (int b = 0; b < bloques.length; b++) {
+                long[] bloque = bloques[b];
+                if (bloque == null) continue;
+                for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                    long palabra = bloque[i];
+                    while (palabra != 0) {
+                        filas[n++] = (b << 12) | (i << 6) | Long.numberOfTrailingZeros(palabra);
+                        palabra &= palabra - 1;
+                    }
+                }
+            }
+            return filas;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package madstodolist.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Reservas de stock de los productos.
+// Las unidades disponibles de cada producto son un contador atómico en memoria que
+// se decrementa con compare-and-set y nunca baja de cero, así que no hay bloqueos
+// de fila durante las ventas y no se puede vender más de lo que hay. Una reserva
+// tiene caducidad: si no se confirma a tiempo sus unidades vuelven al stock.
+// Los contadores solo filtran las compras: el stock de la base de datos es el que
+// manda y se descuenta con una condición (stock >= cantidad) en la misma transacción
+// que guarda el pedido, así que varios nodos con sus propios contadores no pueden
+// vender entre todos más de lo que hay. La reconciliación periódica recoge las
+// ventas de otros nodos y los cambios hechos fuera de aquí.
+@Service
+public class InventarioService {
+
+    Logger logger = LoggerFactory.getLogger(InventarioService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Tiempo que se mantienen las unidades reservadas sin confirmar la compra
+    @Value("${inventario.reserva.duracion-ms:600000}")
+    private long duracionReservaMs;
+
+    private final ConcurrentHashMap<Long, Existencias> existencias = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Reserva> reservas = new ConcurrentHashMap<>();
+    private final AtomicLong secuenciaReservas = new AtomicLong();
+    // Serializa reconciliar(), sincronizar() y el registro de ventas; se toma con E/S en curso
+    private final ReentrantLock reconciliacion = new ReentrantLock();
+
+    // Reserva unidades de un producto; devuelve el id de la reserva
+    public long reservar(Long productoId, int cantidad) {
+        if (cantidad < 1) {
+            throw new InventarioServiceException("Cantidad no válida");
+        }
+        Existencias stock = productoId != null ? existencias.get(productoId) : null;
+        if (stock == null) {
+            throw new InventarioServiceException("No existe producto con id " + productoId);
+        }
+        if (!stock.tomar(cantidad)) {
+            throw new InventarioServiceException("No hay unidades suficientes del producto " + productoId);
+        }
+        Reserva reserva = new Reserva(secuenciaReservas.incrementAndGet(), stock, cantidad,
+                System.currentTimeMillis() + duracionReservaMs);
+        reservas.put(reserva.id, reserva);
+        return reserva.id;
+    }
+
+    // Convierte la reserva en venta; falla si ya ha caducado o se ha liberado.
+    // Sus unidades quedan fuera del contador hasta que se anula la venta o se
+    // registra tras descontarla en la base de datos.
+    public void confirmar(long reservaId) {
+        Reserva reserva = reservas.remove(reservaId);
+        if (reserva == null) {
+            throw new InventarioServiceException("La reserva " + reservaId + " ha caducado");
+        }
+    }
+
+    // Devuelve al stock las unidades de una reserva que no se va a confirmar
+    public void liberar(long reservaId) {
+        Reserva reserva = reservas.remove(reservaId);
+        if (reserva != null) {
+            reserva.existencias.devolver(reserva.cantidad);
+        }
+    }
+
+    // Deshace una venta confirmada cuyo pedido no se ha guardado (ni descontado su stock)
+    public void anularVenta(Long productoId, int cantidad) {
+        Existencias stock = existencias.get(productoId);
+        if (stock != null) {
+            stock.devolver(cantidad);
+        }
+    }
+
+    // Anota las ventas que descuenta de la base de datos la transacción activa para
+    // que la reconciliación no las vuelva a restar del contador. El cerrojo se toma
+    // antes del commit y se suelta tras anotarlas, así que ninguna reconciliación
+    // puede leer el stock ya descontado sin ver también las ventas anotadas.
+    public void registrarVentasAlConfirmar(long[] productos, int[] cantidades) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Las ventas se registran dentro de la transacción que las descuenta");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                reconciliacion.lock();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (!reconciliacion.isHeldByCurrentThread()) return;
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        for (int i = 0; i < productos.length; i++) {
+                            Existencias stock = existencias.get(productos[i]);
+                            if (stock != null) {
+                                stock.stockPersistido -= cantidades[i];
+                            }
+                        }
+                    }
+                } finally {
+                    reconciliacion.unlock();
+                }
+            }
+        });
+    }
+
+    // Unidades que se pueden reservar ahora mismo
+    public int disponibles(Long productoId) {
+        Existencias stock = productoId != null ? existencias.get(productoId) : null;
+        return stock != null ? Math.max(stock.disponibles.get(), 0) : 0;
+    }
+
+    // Las reservas caducadas devuelven sus unidades al stock
+    @Scheduled(fixedDelayString = "${inventario.reserva.revision-ms:1000}")
+    public void caducarReservas() {
+        long ahora = System.currentTimeMillis();
+        int caducadas = 0;
+        for (Reserva reserva : reservas.values()) {
+            // remove(clave, valor) garantiza que solo uno de confirmar/liberar/caducar gana
+            if (reserva.caducidad <= ahora && reservas.remove(reserva.id, reserva)) {
+                reserva.existencias.devolver(reserva.cantidad);
+                caducadas++;
+            }
+        }
+        if (caducadas > 0) {
+            logger.debug("{} reservas de stock caducadas", caducadas);
+        }
+    }
+
+    // Ajusta los contadores al stock de la base de datos.
+    // Usa una transacción nueva porque también se llama tras el commit de otra.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${inventario.reconciliacion-ms:5000}",
+            fixedDelayString = "${inventario.reconciliacion-ms:5000}")
+    public void reconciliar() {
+        reconciliacion.lock();
+        try {
+            Map<Long, Integer> stockBaseDeDatos = new HashMap<>();
+            transaccion(true).executeWithoutResult(estado ->
+                    jdbcTemplate.query("SELECT id, stock FROM productos",
+                            rs -> { stockBaseDeDatos.put(rs.getLong(1), rs.getInt(2)); }));
+            for (Map.Entry<Long, Integer> entrada : stockBaseDeDatos.entrySet()) {
+                ajustar(entrada.getKey(), entrada.getValue());
+            }
+            existencias.keySet().retainAll(stockBaseDeDatos.keySet());
+        } finally {
+            reconciliacion.unlock();
+        }
+    }
+
+    // Relee el stock de un producto tras modificarlo o eliminarlo
+    public void sincronizar(Long productoId) {
+        reconciliacion.lock();
+        try {
+            List<Integer> stock = transaccion(true).execute(estado ->
+                    jdbcTemplate.queryForList("SELECT stock FROM productos WHERE id = ?", Integer.class, productoId));
+            if (stock == null || stock.isEmpty()) {
+                existencias.remove(productoId);
+            } else {
+                ajustar(productoId, stock.get(0));
+            }
+        } finally {
+            reconciliacion.unlock();
+        }
+    }
+
+    // Aplica al contador en memoria la diferencia con el stock leído de la base de datos
+    private void ajustar(Long productoId, int stockBaseDeDatos) {
+        Existencias stock = existencias.get(productoId);
+        if (stock == null) {
+            existencias.put(productoId, new Existencias(stockBaseDeDatos));
+        } else if (stock.stockPersistido != stockBaseDeDatos) {
+            stock.disponibles.addAndGet(stockBaseDeDatos - stock.stockPersistido);
+            stock.stockPersistido = stockBaseDeDatos;
+        }
+    }
+
+    private TransactionTemplate transaccion(boolean soloLectura) {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.setReadOnly(soloLectura);
+        transaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transaccion;
+    }
+
+    // Stock de un producto. Se cumple siempre que
+    // disponibles = stockPersistido - unidades reservadas - ventas confirmadas sin registrar
+    private static final class Existencias {
+        final AtomicInteger disponibles;
+        // Último stock leído de la base de datos menos las ventas registradas desde entonces;
+        // solo se usa bajo el cerrojo de la reconciliación
+        int stockPersistido;
+
+        Existencias(int stock) {
+            this.disponibles = new AtomicInteger(stock);
+            this.stockPersistido = stock;
+        }
+
+        boolean tomar(int cantidad) {
+            while (true) {
+                int actuales = disponibles.get();
+                if (actuales < cantidad) {
+                    return false;
+                }
+                if (disponibles.compareAndSet(actuales, actuales - cantidad)) {
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        void devolver(int cantidad) {
+            disponibles.addAndGet(cantidad);
+        }
+    }
+
+    private static final class Reserva {
+        final long id;
+        final Existencias existencias;
+        final int cantidad;
+        final long caducidad;
+
+        Reserva(long id, Existencias existencias, int cantidad, long caducidad) {
+            this.id = id;
+            this.existencias = existencias;
+            this.cantidad = cantidad;
+            this.caducidad = caducidad;
+        }
+    }
+}
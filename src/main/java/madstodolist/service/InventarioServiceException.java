@@ -0,0 +1,8 @@
+package madstodolist.service;
+
+public class InventarioServiceException extends RuntimeException {
+
+    public InventarioServiceException(String message) {
+        super(message);
+    }
+}
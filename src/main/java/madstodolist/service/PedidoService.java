@@ -0,0 +1,475 @@
+package madstodolist.service;
+
+import madstodolist.dto.*;
+import madstodolist.model.LineaPedido;
+import madstodolist.model.Pedido;
+import madstodolist.repository.LineaPedidoRepository;
+import madstodolist.repository.PedidoRepository;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// Compra del carrito con escritura de pedidos por lotes (group commit).
+// El hilo de la petición valida el carrito, reserva el stock, asigna el id del
+// pedido de un bloque ya reservado y deja el pedido en una cola. Un único hilo
+// escritor inserta con JDBC todos los pedidos que se han acumulado mientras se
+// hacía el commit anterior, en una sola transacción, y completa el futuro de
+// cada pedido cuando el commit ha terminado.
+@Service
+public class PedidoService {
+
+    Logger logger = LoggerFactory.getLogger(PedidoService.class);
+
+    // Debe coincidir con el INCREMENT BY de la secuencia pedidos_id_seq
+    static final int TAMANO_BLOQUE_IDS = 100;
+    private static final int MUESTRAS_METRICAS = 1024;
+    private static final long VENTANA_METRICAS_MS = 10000;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private LineaPedidoRepository lineaPedidoRepository;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private RecomendacionService recomendacionService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    // Número máximo de pedidos escritos en cada commit
+    @Value("${pedidos.lote.maximo:500}")
+    private int tamanoMaximoLote;
+
+    // Pedidos que pueden esperar en cola antes de rechazar nuevas compras
+    @Value("${pedidos.cola.capacidad:10000}")
+    private int capacidadCola;
+
+    // Usuarios con una compra en curso: un segundo "Comprar" no puede volver a cobrar el mismo carrito
+    private final Set<Long> comprasEnCurso = ConcurrentHashMap.newKeySet();
+
+    private BlockingQueue<Solicitud> cola;
+    private Thread escritor;
+    private volatile boolean activo;
+
+    private String siguienteValorSecuencia;
+    private long siguienteId;
+    private long limiteBloqueIds;
+    // Al pedir un bloque nuevo se consulta la secuencia (E/S bajo el cerrojo)
+    private final ReentrantLock bloqueIds = new ReentrantLock();
+
+    // Últimos lotes escritos, en un buffer circular: instante, tamaño y latencia del commit
+    private final long[] instantesLote = new long[MUESTRAS_METRICAS];
+    private final int[] tamanosLote = new int[MUESTRAS_METRICAS];
+    private final long[] latenciasLote = new long[MUESTRAS_METRICAS];
+    private long lotesEscritos;
+    private long pedidosConfirmados;
+
+    @PostConstruct
+    public void iniciar() {
+        siguienteValorSecuencia = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceNextValString("pedidos_id_seq");
+        cola = new ArrayBlockingQueue<>(capacidadCola);
+        activo = true;
+        escritor = new Thread(this::escribirPedidos, "pedidos-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    // Al parar la aplicación se escriben los pedidos que quedan en la cola
+    @PreDestroy
+    public void cerrar() throws InterruptedException {
+        activo = false;
+        escritor.join(30000);
+    }
+
+    // Compra el contenido del carrito. El futuro se completa cuando el pedido
+    // está guardado en la base de datos; el carrito se descuenta justo después.
+    public CompletableFuture<PedidoData> realizarPedido(Long usuarioId) {
+        if (usuarioId == null) {
+            throw new PedidoServiceException("Usuario no logeado");
+        }
+        if (!comprasEnCurso.add(usuarioId)) {
+            throw new PedidoServiceException("Ya hay una compra en curso");
+        }
+        // La compra deja de estar en curso cuando el pedido falla o, si se guarda,
+        // cuando ya se ha descontado del carrito (ver despuesDeGuardar)
+        try {
+            return comprar(usuarioId);
+        } catch (RuntimeException e) {
+            comprasEnCurso.remove(usuarioId);
+            throw e;
+        }
+    }
+
+    // Indica si el usuario tiene una compra que aún no ha terminado
+    public boolean compraEnCurso(Long usuarioId) {
+        return comprasEnCurso.contains(usuarioId);
+    }
+
+    private CompletableFuture<PedidoData> comprar(Long usuarioId) {
+        CarritoData carrito = carritoService.getCarrito(usuarioId);
+        List<LineaCarritoData> lineasCarrito = carrito.getLineas();
+        if (lineasCarrito.isEmpty()) {
+            throw new PedidoServiceException("El carrito está vacío");
+        }
+
+        long[] reservas = new long[lineasCarrito.size()];
+        int reservadas = 0;
+        try {
+            for (LineaCarritoData linea : lineasCarrito) {
+                reservas[reservadas] = inventarioService.reservar(linea.getProducto().getId(), linea.getCantidad());
+                reservadas++;
+            }
+        } catch (InventarioServiceException e) {
+            liberar(reservas, reservadas);
+            throw new PedidoServiceException("No hay unidades suficientes de "
+                    + lineasCarrito.get(reservadas).getProducto().getNombre());
+        }
+
+        List<LineaPedidoData> lineas = new ArrayList<>(lineasCarrito.size());
+        for (LineaCarritoData lineaCarrito : lineasCarrito) {
+            LineaPedidoData linea = new LineaPedidoData();
+            linea.setProductoId(lineaCarrito.getProducto().getId());
+            linea.setNombre(lineaCarrito.getProducto().getNombre());
+            linea.setPrecio(lineaCarrito.getProducto().getPrecio());
+            linea.setCantidad(lineaCarrito.getCantidad());
+            lineas.add(linea);
+        }
+        PedidoData pedido = new PedidoData();
+        pedido.setUsuarioId(usuarioId);
+        pedido.setFecha(new Date());
+        pedido.setLineas(lineas);
+        pedido.setTotal(carrito.getTotal());
+        pedido.setNumeroArticulos(carrito.getNumeroArticulos());
+
+        Solicitud solicitud = new Solicitud(pedido, reservas);
+        try {
+            pedido.setId(siguienteId());
+        } catch (RuntimeException e) {
+            liberar(reservas, reservas.length);
+            throw e;
+        }
+        if (!activo || !cola.offer(solicitud)) {
+            liberar(reservas, reservas.length);
+            throw new PedidoServiceException("Hay demasiados pedidos en curso; inténtalo de nuevo en unos segundos");
+        }
+        return solicitud.futuro;
+    }
+
+    // Método para encontrar un pedido con sus líneas por su ID
+    @Transactional(readOnly = true)
+    public PedidoData findById(Long pedidoId) {
+        Pedido pedido = pedidoRepository.findById(pedidoId).orElse(null);
+        if (pedido == null) {
+            return null;
+        }
+        PedidoData pedidoData = modelMapper.map(pedido, PedidoData.class);
+        pedidoData.setLineas(lineaPedidoRepository.findByPedidoId(pedidoId).stream()
+                .map(linea -> modelMapper.map(linea, LineaPedidoData.class))
+                .collect(Collectors.toList()));
+        return pedidoData;
+    }
+
+    // Pedidos más recientes de un usuario (sin sus líneas)
+    @Transactional(readOnly = true)
+    public List<PedidoData> pedidosUsuario(Long usuarioId, int maximo) {
+        return pedidoRepository.findByUsuarioIdOrderByIdDesc(usuarioId, PageRequest.of(0, maximo)).stream()
+                .map(pedido -> modelMapper.map(pedido, PedidoData.class))
+                .collect(Collectors.toList());
+    }
+
+    // Métricas de la escritura por lotes sobre los últimos lotes escritos
+    public MetricasPedidosData getMetricas() {
+        MetricasPedidosData metricas = new MetricasPedidosData();
+        int muestras;
+        long[] latencias;
+        int sumaTamanos = 0;
+        int tamanoMaximo = 0;
+        int pedidosVentana = 0;
+        long inicioVentana = System.currentTimeMillis() - VENTANA_METRICAS_MS;
+        synchronized (instantesLote) {
+            metricas.setLotes(lotesEscritos);
+            metricas.setPedidosConfirmados(pedidosConfirmados);
+            muestras = (int) Math.min(lotesEscritos, MUESTRAS_METRICAS);
+            latencias = Arrays.copyOf(latenciasLote, muestras);
+            for (int i = 0; i < muestras; i++) {
+                sumaTamanos += tamanosLote[i];
+                tamanoMaximo = Math.max(tamanoMaximo, tamanosLote[i]);
+                if (instantesLote[i] >= inicioVentana) {
+                    pedidosVentana += tamanosLote[i];
+                }
+            }
+        }
+        metricas.setPedidosEnCola(cola.size());
+        metricas.setPedidosPorSegundo(pedidosVentana * 1000.0 / VENTANA_METRICAS_MS);
+        if (muestras > 0) {
+            Arrays.sort(latencias);
+            metricas.setTamanoMedioLote((double) sumaTamanos / muestras);
+            metricas.setTamanoMaximoLote(tamanoMaximo);
+            metricas.setLatenciaP50Ms(percentil(latencias, 0.50));
+            metricas.setLatenciaP95Ms(percentil(latencias, 0.95));
+            metricas.setLatenciaP99Ms(percentil(latencias, 0.99));
+            metricas.setLatenciaMaximaMs(latencias[muestras - 1] / 1e6);
+        }
+        return metricas;
+    }
+
+    // Bucle del hilo escritor: cada vuelta escribe todo lo acumulado en la cola
+    private void escribirPedidos() {
+        List<Solicitud> lote = new ArrayList<>(tamanoMaximoLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                Solicitud primera = cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primera == null) continue;
+                lote.add(primera);
+                cola.drainTo(lote, tamanoMaximoLote - 1);
+                escribirLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error inesperado en el escritor de pedidos", e);
+                for (Solicitud solicitud : lote) {
+                    if (solicitud.futuro.completeExceptionally(e)) {
+                        comprasEnCurso.remove(solicitud.pedido.getUsuarioId());
+                    }
+                }
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLote(List<Solicitud> lote) {
+        // Las reservas se confirman antes del commit para que no caduquen durante la escritura
+        List<Solicitud> confirmadas = new ArrayList<>(lote.size());
+        for (Solicitud solicitud : lote) {
+            if (confirmarReservas(solicitud)) {
+                confirmadas.add(solicitud);
+            }
+        }
+        if (confirmadas.isEmpty()) return;
+
+        long inicio = System.nanoTime();
+        if (insertar(confirmadas)) {
+            registrarLote(confirmadas.size(), System.nanoTime() - inicio);
+            // Con el commit hecho se avisa a todos los compradores antes de nada más
+            for (Solicitud solicitud : confirmadas) {
+                solicitud.futuro.complete(solicitud.pedido);
+            }
+            for (Solicitud solicitud : confirmadas) {
+                despuesDeGuardar(solicitud);
+            }
+        } else if (confirmadas.size() > 1) {
+            // Un pedido con problemas no debe tumbar al resto del lote: se reintentan uno a uno
+            for (Solicitud solicitud : confirmadas) {
+                inicio = System.nanoTime();
+                if (insertar(Collections.singletonList(solicitud))) {
+                    registrarLote(1, System.nanoTime() - inicio);
+                    solicitud.futuro.complete(solicitud.pedido);
+                    despuesDeGuardar(solicitud);
+                } else {
+                    fallar(solicitud);
+                }
+            }
+        } else {
+            fallar(confirmadas.get(0));
+        }
+    }
+
+    // Inserta los pedidos y sus líneas y descuenta su stock en una única transacción.
+    // El descuento solo se aplica si quedan unidades en la base de datos, que es la que
+    // manda cuando hay varios nodos; si a alguna línea le faltan se deshace todo.
+    private boolean insertar(List<Solicitud> solicitudes) {
+        List<Object[]> pedidos = new ArrayList<>(solicitudes.size());
+        List<Object[]> lineas = new ArrayList<>();
+        List<Object[]> descuentos = new ArrayList<>();
+        for (Solicitud solicitud : solicitudes) {
+            PedidoData pedido = solicitud.pedido;
+            pedidos.add(new Object[]{pedido.getId(), pedido.getUsuarioId(), new Timestamp(pedido.getFecha().getTime()),
+                    pedido.getTotal(), pedido.getNumeroArticulos()});
+            for (LineaPedidoData linea : pedido.getLineas()) {
+                lineas.add(new Object[]{pedido.getId(), linea.getProductoId(), linea.getNombre(),
+                        linea.getPrecio(), linea.getCantidad()});
+                descuentos.add(new Object[]{linea.getCantidad(), linea.getProductoId(), linea.getCantidad()});
+            }
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+                jdbcTemplate.batchUpdate("INSERT INTO pedidos (id, usuario_id, fecha, total, numero_articulos) " +
+                        "VALUES (?, ?, ?, ?, ?)", pedidos);
+                jdbcTemplate.batchUpdate("INSERT INTO pedido_lineas (pedido_id, producto_id, nombre, precio, cantidad) " +
+                        "VALUES (?, ?, ?, ?, ?)", lineas);
+                int[] descontados = jdbcTemplate.batchUpdate(
+                        "UPDATE productos SET stock = stock - ? WHERE id = ? AND stock >= ?", descuentos);
+                long[] productos = new long[descontados.length];
+                int[] cantidades = new int[descontados.length];
+                for (int i = 0; i < descontados.length; i++) {
+                    if (descontados[i] == 0) {
+                        throw new InventarioServiceException("No hay unidades suficientes del producto " + descuentos.get(i)[1]);
+                    }
+                    productos[i] = (Long) descuentos.get(i)[1];
+                    cantidades[i] = (Integer) descuentos.get(i)[0];
+                }
+                inventarioService.registrarVentasAlConfirmar(productos, cantidades);
+            });
+            return true;
+        } catch (InventarioServiceException e) {
+            logger.debug("Lote de {} pedidos sin stock suficiente: {}", solicitudes.size(), e.getMessage());
+            if (solicitudes.size() == 1) {
+                solicitudes.get(0).sinStock = true;
+            }
+            return false;
+        } catch (RuntimeException e) {
+            logger.error("Error al guardar un lote de {} pedidos", solicitudes.size(), e);
+            return false;
+        }
+    }
+
+    private boolean confirmarReservas(Solicitud solicitud) {
+        List<LineaPedidoData> lineas = solicitud.pedido.getLineas();
+        for (int i = 0; i < solicitud.reservas.length; i++) {
+            try {
+                inventarioService.confirmar(solicitud.reservas[i]);
+            } catch (InventarioServiceException e) {
+                for (int j = 0; j < i; j++) {
+                    inventarioService.anularVenta(lineas.get(j).getProductoId(), lineas.get(j).getCantidad());
+                }
+                liberar(solicitud.reservas, solicitud.reservas.length);
+                solicitud.futuro.completeExceptionally(
+                        new PedidoServiceException("La reserva del stock ha caducado; vuelve a intentarlo"));
+                comprasEnCurso.remove(solicitud.pedido.getUsuarioId());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Tareas de un pedido ya guardado. Cada pedido va en su propio try: si algo falla
+    // aquí el pedido sigue siendo válido y no debe afectar a los demás del lote.
+    private void despuesDeGuardar(Solicitud solicitud) {
+        PedidoData pedido = solicitud.pedido;
+        long[] productos = new long[pedido.getLineas().size()];
+        int[] cantidades = new int[productos.length];
+        for (int i = 0; i < productos.length; i++) {
+            productos[i] = pedido.getLineas().get(i).getProductoId();
+            cantidades[i] = pedido.getLineas().get(i).getCantidad();
+        }
+        try {
+            carritoService.descontarProductos(pedido.getUsuarioId(), productos, cantidades);
+            recomendacionService.registrarCompra(pedido.getUsuarioId(), productos, cantidades);
+            productoService.registrarVentas(productos, cantidades);
+        } catch (RuntimeException e) {
+            logger.error("Error tras guardar el pedido {}", pedido.getId(), e);
+        } finally {
+            comprasEnCurso.remove(pedido.getUsuarioId());
+        }
+    }
+
+    private void fallar(Solicitud solicitud) {
+        for (LineaPedidoData linea : solicitud.pedido.getLineas()) {
+            inventarioService.anularVenta(linea.getProductoId(), linea.getCantidad());
+            if (solicitud.sinStock) {
+                // Otro nodo ha vendido las unidades: el contador de este se pone al día
+                inventarioService.sincronizar(linea.getProductoId());
+            }
+        }
+        solicitud.futuro.completeExceptionally(new PedidoServiceException(solicitud.sinStock
+                ? "No hay unidades suficientes para completar el pedido"
+                : "No se ha podido guardar el pedido"));
+        comprasEnCurso.remove(solicitud.pedido.getUsuarioId());
+    }
+
+    private void liberar(long[] reservas, int numero) {
+        for (int i = 0; i < numero; i++) {
+            inventarioService.liberar(reservas[i]);
+        }
+    }
+
+    // Ids de pedido: cada valor de la secuencia reserva un bloque de TAMANO_BLOQUE_IDS ids
+    private long siguienteId() {
+        bloqueIds.lock();
+        try {
+            if (siguienteId == limiteBloqueIds) {
+                Long inicioBloque = jdbcTemplate.queryForObject(siguienteValorSecuencia, Long.class);
+                siguienteId = inicioBloque;
+                limiteBloqueIds = inicioBloque + TAMANO_BLOQUE_IDS;
+            }
+            return siguienteId++;
+        } finally {
+            bloqueIds.unlock();
+        }
+    }
+
+    private void registrarLote(int tamano, long latenciaNanos) {
+        synchronized (instantesLote) {
+            int i = (int) (lotesEscritos % MUESTRAS_METRICAS);
+            instantesLote[i] = System.currentTimeMillis();
+            tamanosLote[i] = tamano;
+            latenciasLote[i] = latenciaNanos;
+            lotesEscritos++;
+            pedidosConfirmados += tamano;
+        }
+    }
+
+    private static double percentil(long[] ordenados, double fraccion) {
+        int i = (int) Math.ceil(fraccion * ordenados.length) - 1;
+        return ordenados[Math.max(i, 0)] / 1e6;
+    }
+
+    // Pedido pendiente de escribir junto con sus reservas de stock
+    private static final class Solicitud {
+        final PedidoData pedido;
+        final long[] reservas;
+        final CompletableFuture<PedidoData> futuro = new CompletableFuture<>();
+        // El pedido ha fallado porque la base de datos no tenía stock suficiente
+        boolean sinStock;
+
+        Solicitud(PedidoData pedido, long[] reservas) {
+            this.pedido = pedido;
+            this.reservas = reservas;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package madstodolist.service;
+
+public class PedidoServiceException extends RuntimeException {
+
+    public PedidoServiceException(String message) {
+        super(message);
+    }
+}
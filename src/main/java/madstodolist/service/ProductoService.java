@@ -0,0 +1,327 @@
+package madstodolist.service;
+
+import madstodolist.dto.BusquedaProductosData;
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.dto.ProductoData;
+import madstodolist.model.Producto;
+import madstodolist.repository.ProductoRepository;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ProductoService {
+
+    Logger logger = LoggerFactory.getLogger(ProductoService.class);
+
+    // Lo que suma a la popularidad de un producto cada visita y cada unidad vendida
+    static final int PESO_VISITA = 1;
+    static final int PESO_VENTA = 10;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Índice en memoria usado para la búsqueda por facetas
+    private final IndiceCatalogo indiceCatalogo = new IndiceCatalogo();
+
+    // Las reconstrucciones pedidas durante el uso se hacen en este hilo, no en el de la petición
+    private final ExecutorService reconstrucciones = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "catalogo-reconstruccion");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean();
+    // Una sola reconstrucción a la vez, y nunca a la vez que se vuelca la popularidad
+    private final ReentrantLock reconstruccion = new ReentrantLock();
+
+    // Visitas y ventas pendientes de sumar a la popularidad de cada producto
+    private final ConcurrentHashMap<Long, Integer> popularidadPendiente = new ConcurrentHashMap<>();
+
+    // Carga el índice del catálogo al arrancar la aplicación (y si hay que rehacerlo).
+    // Usa una transacción nueva porque también se llama tras el commit de otra.
+    // Se carga antes que los demás servicios que lo consultan al arrancar.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reconstruirIndice() {
+        boolean completo;
+        reconstruccion.lock();
+        try {
+            TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+            lectura.setReadOnly(true);
+            lectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            completo = Boolean.TRUE.equals(lectura.execute(estado -> {
+                long inicio = System.currentTimeMillis();
+                // Los cambios que lleguen mientras se leen los productos se anotan y se
+                // vuelven a aplicar sobre el índice nuevo
+                indiceCatalogo.empezarReconstruccion();
+                int capacidad = (int) productoRepository.count();
+                boolean resultado;
+                try (Stream<Producto> productos = productoRepository.streamAllOrderById()) {
+                    resultado = indiceCatalogo.reconstruir(productos.peek(entityManager::detach).iterator(), capacidad);
+                }
+                logger.info("Índice del catálogo cargado: {} productos en {} ms",
+                        indiceCatalogo.getNumeroProductos(), System.currentTimeMillis() - inicio);
+                return resultado;
+            }));
+        } finally {
+            reconstruccion.unlock();
+        }
+        if (!completo) {
+            programarReconstruccion();
+        }
+    }
+
+    // Pide una reconstrucción en segundo plano; las peticiones que llegan mientras
+    // hay una en cola se juntan con ella
+    private void programarReconstruccion() {
+        if (reconstruccionPendiente.compareAndSet(false, true)) {
+            reconstrucciones.execute(() -> {
+                reconstruccionPendiente.set(false);
+                try {
+                    reconstruirIndice();
+                } catch (RuntimeException e) {
+                    logger.error("Error al reconstruir el índice del catálogo", e);
+                }
+            });
+        }
+    }
+
+    // Cada visita a la ficha de un producto suma a su popularidad
+    public void registrarVisita(Long productoId) {
+        if (productoId != null) {
+            popularidadPendiente.merge(productoId, PESO_VISITA, Integer::sum);
+        }
+    }
+
+    // Cada unidad vendida suma a la popularidad de su producto
+    public void registrarVentas(long[] productos, int[] cantidades) {
+        for (int i = 0; i < productos.length; i++) {
+            popularidadPendiente.merge(productos[i], PESO_VENTA * cantidades[i], Integer::sum);
+        }
+    }
+
+    // Escribe por lotes la popularidad acumulada y la aplica al índice del catálogo
+    @Scheduled(fixedDelayString = "${catalogo.popularidad.volcado-ms:10000}")
+    public void volcarPopularidad() {
+        reconstruccion.lock();
+        try {
+            Map<Long, Integer> incrementos = new HashMap<>();
+            for (Long productoId : popularidadPendiente.keySet()) {
+                Integer incremento = popularidadPendiente.remove(productoId);
+                if (incremento != null) {
+                    incrementos.put(productoId, incremento);
+                }
+            }
+            if (incrementos.isEmpty()) return;
+
+            List<Object[]> filas = new ArrayList<>(incrementos.size());
+            for (Map.Entry<Long, Integer> incremento : incrementos.entrySet()) {
+                filas.add(new Object[]{incremento.getValue(), incremento.getKey()});
+            }
+            try {
+                TransactionTemplate escritura = new TransactionTemplate(transactionManager);
+                escritura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                escritura.executeWithoutResult(estado ->
+                        jdbcTemplate.batchUpdate("UPDATE productos SET popularidad = popularidad + ? WHERE id = ?", filas));
+            } catch (RuntimeException e) {
+                logger.error("Error al guardar la popularidad de {} productos; se reintentará", incrementos.size(), e);
+                incrementos.forEach((productoId, incremento) -> popularidadPendiente.merge(productoId, incremento, Integer::sum));
+                return;
+            }
+            indiceCatalogo.sumarPopularidad(incrementos);
+        } finally {
+            reconstruccion.unlock();
+        }
+    }
+
+    // Al parar la aplicación se escribe la popularidad pendiente
+    @PreDestroy
+    public void cerrar() {
+        reconstrucciones.shutdownNow();
+        volcarPopularidad();
+    }
+
+    // Método para crear un nuevo producto
+    @Transactional
+    public ProductoData crearProducto(ProductoData productoData) {
+        validar(productoData);
+        Producto producto = modelMapper.map(productoData, Producto.class);
+        producto.setId(null);
+        producto.setPopularidad(0);
+        producto = productoRepository.save(producto);
+        actualizarIndice(producto);
+        return modelMapper.map(producto, ProductoData.class);
+    }
+
+    // Método para actualizar un producto existente
+    @Transactional
+    public ProductoData actualizarProducto(Long id, ProductoData productoData) {
+        validar(productoData);
+        Producto producto = productoRepository.findById(id)
+                .orElseThrow(() -> new ProductoServiceException("No existe producto con id " + id));
+
+        producto.setNombre(productoData.getNombre());
+        producto.setDescripcion(productoData.getDescripcion());
+        producto.setDeporte(productoData.getDeporte());
+        producto.setMarca(productoData.getMarca());
+        producto.setTalla(productoData.getTalla());
+        producto.setPrecio(productoData.getPrecio());
+        producto.setImagen(productoData.getImagen());
+        producto = productoRepository.save(producto);
+
+        // El stock no se sobrescribe con el valor del formulario, que puede ser anterior a
+        // las últimas ventas: solo se le suman las unidades repuestas
+        if (productoData.getReponer() != 0) {
+            int actualizados = jdbcTemplate.update("UPDATE productos SET stock = stock + ? WHERE id = ? AND stock + ? >= 0",
+                    productoData.getReponer(), id, productoData.getReponer());
+            if (actualizados == 0) {
+                throw new ProductoServiceException("El stock del producto no puede quedar negativo");
+            }
+        }
+        actualizarIndice(producto);
+        ProductoData actualizado = modelMapper.map(producto, ProductoData.class);
+        actualizado.setStock(jdbcTemplate.queryForObject("SELECT stock FROM productos WHERE id = ?", Integer.class, id));
+        return actualizado;
+    }
+
+    // Método para eliminar un producto por ID
+    @Transactional
+    public void eliminarProducto(Long idProducto) {
+        Producto producto = productoRepository.findById(idProducto)
+                .orElseThrow(() -> new ProductoServiceException("No existe producto con id " + idProducto));
+        productoRepository.delete(producto);
+        Transacciones.despuesDelCommit(() -> {
+            indiceCatalogo.eliminar(idProducto);
+            inventarioService.sincronizar(idProducto);
+        });
+    }
+
+    // Método para encontrar un producto por su ID
+    @Transactional(readOnly = true)
+    public ProductoData findById(Long idProducto) {
+        Producto producto = productoRepository.findById(idProducto).orElse(null);
+        return producto != null ? modelMapper.map(producto, ProductoData.class) : null;
+    }
+
+    // Método para obtener varios productos por ID (los que no existen se omiten)
+    @Transactional(readOnly = true)
+    public Map<Long, ProductoData> findAllById(Collection<Long> idsProductos) {
+        Map<Long, ProductoData> productos = new HashMap<>();
+        for (Producto producto : productoRepository.findAllById(idsProductos)) {
+            productos.put(producto.getId(), modelMapper.map(producto, ProductoData.class));
+        }
+        return productos;
+    }
+
+    // Comprueba si un producto existe usando el índice en memoria (sin acceder a la base de datos)
+    public boolean existeProducto(Long idProducto) {
+        return idProducto != null && indiceCatalogo.contiene(idProducto);
+    }
+
+    // Búsqueda por facetas: el índice en memoria resuelve filtros, recuentos y orden,
+    // y solo se leen de la base de datos los productos de la página pedida
+    @Transactional(readOnly = true)
+    public BusquedaProductosData buscarProductos(FiltroProductosData filtro, int page, int size) {
+        IndiceCatalogo.Resultado resultado = indiceCatalogo.buscar(filtro, page, size);
+
+        List<Long> ids = Arrays.stream(resultado.ids).boxed().collect(Collectors.toList());
+        Map<Long, Producto> porId = productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, producto -> producto));
+        List<ProductoData> productos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Producto producto = porId.get(id);
+            if (producto != null) {
+                productos.add(modelMapper.map(producto, ProductoData.class));
+            }
+        }
+
+        BusquedaProductosData busqueda = new BusquedaProductosData();
+        busqueda.setProductos(productos);
+        busqueda.setTotalProductos(resultado.total);
+        busqueda.setTotalPages((resultado.total + size - 1) / size);
+        busqueda.setFacetasDeporte(resultado.facetasDeporte);
+        busqueda.setFacetasMarca(resultado.facetasMarca);
+        busqueda.setFacetasTalla(resultado.facetasTalla);
+        busqueda.setFacetasPrecio(resultado.facetasPrecio);
+        return busqueda;
+    }
+
+    // Etiquetas de las bandas de precio en euros, en el orden de sus índices
+    public List<String> getBandasPrecio() {
+        int[] bandas = IndiceCatalogo.BANDAS_PRECIO;
+        List<String> etiquetas = new ArrayList<>(bandas.length);
+        for (int i = 0; i < bandas.length; i++) {
+            etiquetas.add(i + 1 < bandas.length
+                    ? (bandas[i] / 100) + " - " + (bandas[i + 1] / 100) + " €"
+                    : "Más de " + (bandas[i] / 100) + " €");
+        }
+        return etiquetas;
+    }
+
+    private void validar(ProductoData productoData) {
+        if (productoData.getNombre() == null || productoData.getNombre().isBlank()) {
+            throw new ProductoServiceException("El producto no tiene nombre");
+        } else if (productoData.getDeporte() == null || productoData.getDeporte().isBlank()) {
+            throw new ProductoServiceException("El producto no tiene deporte");
+        } else if (productoData.getMarca() == null || productoData.getMarca().isBlank()) {
+            throw new ProductoServiceException("El producto no tiene marca");
+        } else if (productoData.getPrecio() == null || productoData.getPrecio().signum() < 0) {
+            throw new ProductoServiceException("El precio del producto no es válido");
+        } else if (productoData.getPrecio().compareTo(BigDecimal.valueOf(Integer.MAX_VALUE / 100)) >= 0) {
+            throw new ProductoServiceException("El precio del producto es demasiado alto");
+        } else if (productoData.getStock() < 0) {
+            throw new ProductoServiceException("El stock del producto no puede ser negativo");
+        }
+    }
+
+    // El índice y el stock en memoria se actualizan cuando la transacción hace commit
+    private void actualizarIndice(Producto producto) {
+        Transacciones.despuesDelCommit(() -> {
+            inventarioService.sincronizar(producto.getId());
+            if (!indiceCatalogo.indexar(producto)) {
+                logger.warn("Producto {} fuera de orden en el índice del catálogo; se reconstruye", producto.getId());
+                programarReconstruccion();
+            }
+        });
+    }
+}
@@ -0,0 +1,8 @@
+package madstodolist.service;
+
+public class ProductoServiceException extends RuntimeException {
+
+    public ProductoServiceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,349 @@
+package madstodolist.service;
+
+import madstodolist.dto.BusquedaProductosData;
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.dto.ProductoData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Recomendaciones de la sección "Descubre más".
+// Cada visita o compra de un usuario suma peso a la co-ocurrencia entre ese producto
+// y los últimos que ha visto o comprado (matriz dispersa con filas de arrays primitivos).
+// Un recálculo periódico en segundo plano obtiene en paralelo (fork-join) los K vecinos
+// más fuertes de cada producto y, con ellos, las recomendaciones de cada usuario; en la
+// petición solo se lee la lista ya calculada. Sin datos se recurre a los más vendidos.
+@Service
+public class RecomendacionService {
+
+    Logger logger = LoggerFactory.getLogger(RecomendacionService.class);
+
+    static final int PESO_VISITA = 1;
+    static final int PESO_COMPRA = 3;
+    // Productos recientes de cada usuario con los que se relaciona un nuevo evento
+    static final int TAMANO_HISTORIAL = 20;
+    // Vecinos guardados por producto y recomendaciones guardadas por usuario
+    static final int VECINOS_POR_PRODUCTO = 12;
+    static final int RECOMENDACIONES_POR_USUARIO = 6;
+    private static final int UMBRAL_TAREA = 256;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Número de productos mostrados en "Descubre más"
+    @Value("${recomendaciones.mostradas:3}")
+    private int mostradas;
+
+    private final ConcurrentHashMap<Long, Fila> coocurrencias = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Historial> historiales = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, int[]> ventas = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private volatile Recomendaciones recomendaciones = new Recomendaciones(Collections.emptyMap(), new long[0]);
+
+    public void registrarVisita(Long usuarioId, Long productoId) {
+        if (usuarioId != null && productoId != null) {
+            registrar(usuarioId, productoId, PESO_VISITA);
+        }
+    }
+
+    public void registrarCompra(Long usuarioId, long[] productos, int[] cantidades) {
+        for (int i = 0; i < productos.length; i++) {
+            registrar(usuarioId, productos[i], PESO_COMPRA);
+            int[] unidades = ventas.computeIfAbsent(productos[i], id -> new int[1]);
+            synchronized (unidades) {
+                unidades[0] += cantidades[i];
+            }
+        }
+    }
+
+    // Productos recomendados a un usuario (o los más vendidos si es anónimo o no hay datos)
+    public List<ProductoData> recomendaciones(Long usuarioId) {
+        Recomendaciones actuales = recomendaciones;
+        long[] ids = usuarioId != null ? actuales.porUsuario.get(usuarioId) : null;
+        if (ids == null) {
+            ids = actuales.masVendidos;
+        }
+        List<Long> candidatos = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            if (productoService.existeProducto(id)) candidatos.add(id);
+        }
+        if (candidatos.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, ProductoData> productos = productoService.findAllById(candidatos);
+        List<ProductoData> resultado = new ArrayList<>(mostradas);
+        for (Long id : candidatos) {
+            ProductoData producto = productos.get(id);
+            if (producto != null && resultado.size() < mostradas) resultado.add(producto);
+        }
+        return resultado;
+    }
+
+    // Carga la matriz con las compras ya guardadas y hace el primer cálculo
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        long inicio = System.currentTimeMillis();
+        jdbcTemplate.query("SELECT p.usuario_id, l.producto_id, l.cantidad FROM pedido_lineas l " +
+                "JOIN pedidos p ON p.id = l.pedido_id ORDER BY p.id", rs -> {
+            registrarCompra(rs.getLong(1), new long[]{rs.getLong(2)}, new int[]{rs.getInt(3)});
+        });
+        logger.info("Modelo de recomendaciones cargado: {} productos y {} usuarios en {} ms",
+                coocurrencias.size(), historiales.size(), System.currentTimeMillis() - inicio);
+        recalcular();
+    }
+
+    // Recalcula en paralelo los vecinos de cada producto y las recomendaciones de cada usuario
+    @Scheduled(initialDelayString = "${recomendaciones.recalculo-ms:60000}",
+            fixedDelayString = "${recomendaciones.recalculo-ms:60000}")
+    public void recalcular() {
+        long inicio = System.currentTimeMillis();
+
+        Long[] productos = coocurrencias.keySet().toArray(new Long[0]);
+        long[][] vecinos = new long[productos.length][];
+        int[][] pesosVecinos = new int[productos.length][];
+        pool.invoke(new Tarea(0, productos.length, i -> {
+            Fila fila = coocurrencias.get(productos[i]);
+            long[] columnas;
+            int[] pesos;
+            synchronized (fila) {
+                columnas = Arrays.copyOf(fila.columnas, fila.columnas.length);
+                pesos = Arrays.copyOf(fila.pesos, fila.pesos.length);
+            }
+            int[] mejores = mejores(pesos, VECINOS_POR_PRODUCTO);
+            vecinos[i] = new long[mejores.length];
+            pesosVecinos[i] = new int[mejores.length];
+            for (int j = 0; j < mejores.length; j++) {
+                vecinos[i][j] = columnas[mejores[j]];
+                pesosVecinos[i][j] = pesos[mejores[j]];
+            }
+        }));
+        Map<Long, Integer> posicion = new HashMap<>(productos.length * 2);
+        for (int i = 0; i < productos.length; i++) {
+            posicion.put(productos[i], i);
+        }
+
+        Long[] usuarios = historiales.keySet().toArray(new Long[0]);
+        long[][] porUsuario = new long[usuarios.length][];
+        pool.invoke(new Tarea(0, usuarios.length, i -> {
+            long[] historial = historiales.get(usuarios[i]).recientes();
+            Map<Long, Integer> puntuaciones = new HashMap<>();
+            for (long visto : historial) {
+                Integer p = posicion.get(visto);
+                if (p == null) continue;
+                for (int j = 0; j < vecinos[p].length; j++) {
+                    puntuaciones.merge(vecinos[p][j], pesosVecinos[p][j], Integer::sum);
+                }
+            }
+            for (long visto : historial) {
+                puntuaciones.remove(visto);
+            }
+            porUsuario[i] = mejoresClaves(puntuaciones, RECOMENDACIONES_POR_USUARIO);
+        }));
+
+        long[] masVendidos = masVendidos();
+        Map<Long, long[]> nuevas = new HashMap<>(usuarios.length * 2);
+        for (int i = 0; i < usuarios.length; i++) {
+            nuevas.put(usuarios[i], completar(porUsuario[i], masVendidos));
+        }
+        recomendaciones = new Recomendaciones(nuevas, masVendidos);
+        logger.debug("Recomendaciones recalculadas: {} productos y {} usuarios en {} ms",
+                productos.length, usuarios.length, System.currentTimeMillis() - inicio);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdownNow();
+    }
+
+    private void registrar(long usuarioId, long productoId, int peso) {
+        Historial historial = historiales.computeIfAbsent(usuarioId, id -> new Historial());
+        long[] anteriores;
+        synchronized (historial) {
+            anteriores = historial.recientes();
+            // Volver a ver un producto reciente no cuenta como nueva co-ocurrencia
+            if (!historial.anadir(productoId) && peso == PESO_VISITA) return;
+        }
+        for (long anterior : anteriores) {
+            if (anterior == productoId) continue;
+            fila(productoId).sumar(anterior, peso);
+            fila(anterior).sumar(productoId, peso);
+        }
+    }
+
+    private Fila fila(long productoId) {
+        return coocurrencias.computeIfAbsent(productoId, id -> new Fila());
+    }
+
+    // Más vendidos por unidades; si no hay ventas suficientes se completa con los más populares del catálogo
+    private long[] masVendidos() {
+        Map<Long, Integer> unidades = new HashMap<>();
+        ventas.forEach((id, u) -> unidades.put(id, u[0]));
+        long[] vendidos = mejoresClaves(unidades, RECOMENDACIONES_POR_USUARIO);
+        if (vendidos.length >= RECOMENDACIONES_POR_USUARIO) {
+            return vendidos;
+        }
+        FiltroProductosData filtro = new FiltroProductosData();
+        filtro.setOrden(FiltroProductosData.Orden.POPULARIDAD);
+        BusquedaProductosData populares = productoService.buscarProductos(filtro, 0, RECOMENDACIONES_POR_USUARIO);
+        long[] ids = new long[populares.getProductos().size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = populares.getProductos().get(i).getId();
+        }
+        return completar(vendidos, ids);
+    }
+
+    // Añade al final los ids de relleno que no estén ya, hasta RECOMENDACIONES_POR_USUARIO
+    private static long[] completar(long[] ids, long[] relleno) {
+        if (ids.length >= RECOMENDACIONES_POR_USUARIO) return ids;
+        long[] resultado = Arrays.copyOf(ids, RECOMENDACIONES_POR_USUARIO);
+        int n = ids.length;
+        for (int i = 0; i < relleno.length && n < resultado.length; i++) {
+            boolean repetido = false;
+            for (int j = 0; j < n && !repetido; j++) {
+                repetido = resultado[j] == relleno[i];
+            }
+            if (!repetido) resultado[n++] = relleno[i];
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    // Posiciones de los k pesos mayores (ignorando huecos), de mayor a menor
+    private static int[] mejores(int[] pesos, int k) {
+        Integer[] posiciones = new Integer[pesos.length];
+        int n = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            if (pesos[i] > 0) posiciones[n++] = i;
+        }
+        Arrays.sort(posiciones, 0, n, (a, b) -> Integer.compare(pesos[b], pesos[a]));
+        int[] resultado = new int[Math.min(k, n)];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = posiciones[i];
+        }
+        return resultado;
+    }
+
+    private static long[] mejoresClaves(Map<Long, Integer> puntuaciones, int k) {
+        return puntuaciones.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    // Reparte un rango de índices entre los hilos del pool
+    private static final class Tarea extends RecursiveAction {
+        private final int desde;
+        private final int hasta;
+        private final IntConsumer accion;
+
+        Tarea(int desde, int hasta, IntConsumer accion) {
+            this.desde = desde;
+            this.hasta = hasta;
+            this.accion = accion;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= UMBRAL_TAREA) {
+                for (int i = desde; i < hasta; i++) {
+                    accion.accept(i);
+                }
+            } else {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new Tarea(desde, medio, accion), new Tarea(medio, hasta, accion));
+            }
+        }
+    }
+
+    // Fila de la matriz de co-ocurrencias: tabla hash abierta de id de producto -> peso
+    private static final class Fila {
+        long[] columnas = new long[8];
+        int[] pesos = new int[8];
+        int ocupadas;
+
+        synchronized void sumar(long columna, int peso) {
+            if ((ocupadas + 1) * 4 > columnas.length * 3) {
+                redimensionar();
+            }
+            int i = posicion(columnas, pesos, columna);
+            if (pesos[i] == 0) {
+                columnas[i] = columna;
+                ocupadas++;
+            }
+            pesos[i] += peso;
+        }
+
+        private void redimensionar() {
+            long[] columnasPrevias = columnas;
+            int[] pesosPrevios = pesos;
+            columnas = new long[columnasPrevias.length * 2];
+            pesos = new int[pesosPrevios.length * 2];
+            for (int i = 0; i < columnasPrevias.length; i++) {
+                if (pesosPrevios[i] > 0) {
+                    int j = posicion(columnas, pesos, columnasPrevias[i]);
+                    columnas[j] = columnasPrevias[i];
+                    pesos[j] = pesosPrevios[i];
+                }
+            }
+        }
+
+        private static int posicion(long[] columnas, int[] pesos, long columna) {
+            int mascara = columnas.length - 1;
+            int i = Long.hashCode(columna * 0x9E3779B97F4A7C15L) & mascara;
+            while (pesos[i] != 0 && columnas[i] != columna) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+    }
+
+    // Últimos productos vistos o comprados por un usuario (buffer circular)
+    private static final class Historial {
+        final long[] productos = new long[TAMANO_HISTORIAL];
+        int tamano;
+        int siguiente;
+
+        // Devuelve false si el producto ya estaba en el historial
+        boolean anadir(long productoId) {
+            for (int i = 0; i < tamano; i++) {
+                if (productos[i] == productoId) return false;
+            }
+            productos[siguiente] = productoId;
+            siguiente = (siguiente + 1) % TAMANO_HISTORIAL;
+            tamano = Math.min(tamano + 1, TAMANO_HISTORIAL);
+            return true;
+        }
+
+        synchronized long[] recientes() {
+            return Arrays.copyOf(productos, tamano);
+        }
+    }
+
+    // Resultado de un recálculo; se sustituye entero para que las lecturas no necesiten bloqueos
+    private static final class Recomendaciones {
+        final Map<Long, long[]> porUsuario;
+        final long[] masVendidos;
+
+        Recomendaciones(Map<Long, long[]> porUsuario, long[] masVendidos) {
+            this.porUsuario = porUsuario;
+            this.masVendidos = masVendidos;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package madstodolist.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Carga al arrancar los datos de un volcado de PostgreSQL (bloques COPY ... FROM stdin
+// como los de sql/backup*.sql) en la base de datos configurada, H2 o PostgreSQL.
+// En PostgreSQL se usa COPY; en el resto, inserciones JDBC por lotes. Las filas se envían
+// a medida que se leen del fichero. Con semilla.escala > 1 se añaden copias sintéticas de
+// cada fila (ids desplazados, emails distintos y sin administradores) para tener conjuntos
+// de datos grandes en las pruebas de rendimiento; solo entonces se guardan las filas del
+// bloque en memoria, para volver a recorrerlas. Al terminar cada tabla
+// se ajusta la secuencia (o identidad) del id y se informa de las filas por segundo.
+// Solo se activa si se define semilla.fichero; las tablas que ya tienen datos se saltan.
+@Service
+@ConditionalOnProperty(name = "semilla.fichero")
+public class SemillaService {
+
+    Logger logger = LoggerFactory.getLogger(SemillaService.class);
+
+    private static final Pattern COPY = Pattern.compile("^COPY (?:\\w+\\.)?(\\w+) \\(([^)]*)\\) FROM stdin;$");
+    private static final String FIN_COPY = "\\.";
+    // Tamaño de los trozos enviados a COPY en PostgreSQL
+    private static final int TAMANO_BUFFER_COPY = 1 << 16;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Se inyecta para que el esquema esté creado antes de la carga
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${semilla.fichero}")
+    private String fichero;
+
+    // Número de copias de cada fila (1 = solo los datos del volcado)
+    @Value("${semilla.escala:1}")
+    private int escala;
+
+    @Value("${semilla.lote:1000}")
+    private int tamanoLote;
+
+    @PostConstruct
+    public void cargar() throws IOException, SQLException {
+        if (escala < 1) {
+            throw new IllegalStateException("semilla.escala debe ser 1 o mayor");
+        }
+        logger.info("Cargando datos de {} (escala {})", fichero, escala);
+        try (BufferedReader volcado = Files.newBufferedReader(Paths.get(fichero), StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = volcado.readLine()) != null) {
+                Matcher copy = COPY.matcher(linea);
+                if (copy.matches()) {
+                    cargarTabla(copy.group(1), copy.group(2).split(",\\s*"), volcado);
+                }
+            }
+        }
+    }
+
+    // Carga las filas del bloque COPY que empieza en la posición actual del volcado
+    private void cargarTabla(String tabla, String[] columnasVolcado, BufferedReader volcado) throws IOException, SQLException {
+        try (Connection conexion = dataSource.getConnection()) {
+            if (tieneFilas(conexion, tabla)) {
+                logger.warn("La tabla {} ya tiene datos; no se carga", tabla);
+                while (leerFila(volcado) != null) {
+                    // se descarta el bloque
+                }
+                return;
+            }
+            Tabla destino = new Tabla(conexion, tabla, columnasVolcado);
+
+            long inicio = System.nanoTime();
+            boolean postgres = conexion.isWrapperFor(PGConnection.class);
+            long cargadas = postgres ? copiar(conexion, destino, volcado) : insertar(conexion, destino, volcado);
+            long maximoId = ajustarSecuencia(conexion, destino, postgres);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            logger.info("Tabla {}: {} filas en {} s ({} filas/s){}", tabla, cargadas,
+                    String.format(Locale.ROOT, "%.2f", segundos), Math.round(cargadas / Math.max(segundos, 1e-9)),
+                    maximoId > 0 ? "; siguiente id " + (maximoId + 1) : "");
+        }
+    }
+
+    // Recibe los valores de cada fila que se carga (se reutiliza el mismo array)
+    private interface Escritor {
+        void escribir(Object[] valores) throws SQLException;
+    }
+
+    // Pasa al escritor las filas del bloque a medida que se leen (copia 0) y después
+    // las copias sintéticas, para las que hay que guardar las filas leídas.
+    // Devuelve el número de filas escritas.
+    private long recorrer(BufferedReader volcado, Tabla tabla, Escritor escritor) throws IOException, SQLException {
+        List<String[]> leidas = escala > 1 ? new ArrayList<>() : null;
+        Object[] valores = new Object[tabla.columnas.length];
+        long cargadas = 0;
+        String[] fila;
+        while ((fila = leerFila(volcado)) != null) {
+            tabla.valores(fila, 0, valores);
+            escritor.escribir(valores);
+            cargadas++;
+            if (leidas != null) {
+                leidas.add(fila);
+            }
+        }
+        for (int copia = 1; copia < escala; copia++) {
+            for (String[] leida : leidas) {
+                tabla.valores(leida, copia, valores);
+                escritor.escribir(valores);
+                cargadas++;
+            }
+        }
+        return cargadas;
+    }
+
+    // Inserciones JDBC por lotes, con un commit por lote
+    private long insertar(Connection conexion, Tabla tabla, BufferedReader volcado) throws IOException, SQLException {
+        boolean autoCommit = conexion.getAutoCommit();
+        conexion.setAutoCommit(false);
+        long cargadas;
+        try (PreparedStatement insert = conexion.prepareStatement(tabla.insert())) {
+            long[] enLote = new long[1];
+            cargadas = recorrer(volcado, tabla, valores -> {
+                for (int i = 0; i < valores.length; i++) {
+                    insert.setObject(i + 1, valores[i], tabla.tipos[i]);
+                }
+                insert.addBatch();
+                if (++enLote[0] % tamanoLote == 0) {
+                    insert.executeBatch();
+                    conexion.commit();
+                }
+            });
+            insert.executeBatch();
+            conexion.commit();
+        } catch (SQLException e) {
+            conexion.rollback();
+            throw e;
+        } finally {
+            conexion.setAutoCommit(autoCommit);
+        }
+        return cargadas;
+    }
+
+    // COPY ... FROM STDIN de PostgreSQL, enviando las filas en formato texto por trozos
+    private long copiar(Connection conexion, Tabla tabla, BufferedReader volcado) throws IOException, SQLException {
+        CopyIn copy = conexion.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + tabla.nombre + " (" + String.join(", ", tabla.columnas) + ") FROM STDIN");
+        long cargadas;
+        try {
+            StringBuilder buffer = new StringBuilder(TAMANO_BUFFER_COPY + 1024);
+            cargadas = recorrer(volcado, tabla, valores -> {
+                for (int i = 0; i < valores.length; i++) {
+                    if (i > 0) buffer.append('\t');
+                    escaparTexto(buffer, valores[i]);
+                }
+                buffer.append('\n');
+                if (buffer.length() >= TAMANO_BUFFER_COPY) {
+                    enviar(copy, buffer);
+                }
+            });
+            enviar(copy, buffer);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+        return cargadas;
+    }
+
+    private static void enviar(CopyIn copy, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    // Deja la secuencia o identidad del id por encima del mayor id cargado
+    private long ajustarSecuencia(Connection conexion, Tabla tabla, boolean postgres) throws SQLException {
+        if (tabla.posicionId < 0) {
+            return 0;
+        }
+        long maximoId;
+        try (Statement consulta = conexion.createStatement();
+             ResultSet rs = consulta.executeQuery("SELECT MAX(id) FROM " + tabla.nombre)) {
+            rs.next();
+            maximoId = rs.getLong(1);
+        }
+        if (maximoId == 0) {
+            return 0;
+        }
+        if (postgres) {
+            try (PreparedStatement setval = conexion.prepareStatement(
+                    "SELECT setval(pg_get_serial_sequence(?, 'id'), ?)")) {
+                setval.setString(1, tabla.nombre);
+                setval.setLong(2, maximoId);
+                setval.execute();
+            }
+        } else {
+            try (Statement alter = conexion.createStatement()) {
+                alter.execute("ALTER TABLE " + tabla.nombre + " ALTER COLUMN id RESTART WITH " + (maximoId + 1));
+            }
+        }
+        return maximoId;
+    }
+
+    private static boolean tieneFilas(Connection conexion, String tabla) throws SQLException {
+        try (Statement consulta = conexion.createStatement();
+             ResultSet rs = consulta.executeQuery("SELECT 1 FROM " + tabla + " LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    // Siguiente fila de un bloque COPY, o null al llegar a la línea "\."; los campos van
+    // separados por tabuladores
+    private static String[] leerFila(BufferedReader volcado) throws IOException {
+        String linea = volcado.readLine();
+        if (linea == null || linea.equals(FIN_COPY)) {
+            return null;
+        }
+        String[] campos = linea.split("\t", -1);
+        for (int i = 0; i < campos.length; i++) {
+            campos[i] = leerTexto(campos[i]);
+        }
+        return campos;
+    }
+
+    // Formato de texto de COPY: \N es nulo y la barra invertida escapa caracteres de control
+    private static String leerTexto(String campo) {
+        if (campo.equals("\\N")) {
+            return null;
+        }
+        if (campo.indexOf('\\') < 0) {
+            return campo;
+        }
+        StringBuilder texto = new StringBuilder(campo.length());
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            if (c != '\\' || i + 1 == campo.length()) {
+                texto.append(c);
+                continue;
+            }
+            char escapado = campo.charAt(++i);
+            switch (escapado) {
+                case 'b': texto.append('\b'); break;
+                case 'f': texto.append('\f'); break;
+                case 'n': texto.append('\n'); break;
+                case 'r': texto.append('\r'); break;
+                case 't': texto.append('\t'); break;
+                case 'v': texto.append('\u000B'); break;
+                default: texto.append(escapado);
+            }
+        }
+        return texto.toString();
+    }
+
+    private static void escaparTexto(StringBuilder buffer, Object valor) {
+        if (valor == null) {
+            buffer.append("\\N");
+            return;
+        }
+        if (valor instanceof Boolean) {
+            buffer.append((Boolean) valor ? 't' : 'f');
+            return;
+        }
+        String texto = valor.toString();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '\\': buffer.append("\\\\"); break;
+                case '\t': buffer.append("\\t"); break;
+                case '\n': buffer.append("\\n"); break;
+                case '\r': buffer.append("\\r"); break;
+                default: buffer.append(c);
+            }
+        }
+    }
+
+    // Columnas de destino con sus tipos JDBC y la conversión de cada fila del volcado
+    private static final class Tabla {
+        final String nombre;
+        final String[] columnas;
+        final int[] tipos;
+        final int columnasVolcado;
+        final int posicionId;
+        final int posicionEmail;
+        final int posicionAdministrador;
+        // Las copias sintéticas desplazan el id en múltiplos del mayor id del volcado,
+        // que se conoce al terminar de recorrer la copia 0
+        long desplazamientoId;
+
+        Tabla(Connection conexion, String nombre, String[] columnasVolcado) throws SQLException {
+            this.nombre = nombre;
+            List<String> columnas = new ArrayList<>(List.of(columnasVolcado));
+            List<Integer> tipos = new ArrayList<>();
+            try (Statement consulta = conexion.createStatement();
+                 ResultSet rs = consulta.executeQuery("SELECT * FROM " + nombre + " WHERE 1 = 0")) {
+                ResultSetMetaData metadatos = rs.getMetaData();
+                for (String columna : columnasVolcado) {
+                    tipos.add(tipo(metadatos, columna));
+                }
+                // La columna de @Version no está en los volcados antiguos: empieza en 0
+                if (!columnas.contains("version") && tipo(metadatos, "version") != Types.NULL) {
+                    columnas.add("version");
+                    tipos.add(Types.BIGINT);
+                }
+            }
+            this.columnas = columnas.toArray(new String[0]);
+            this.tipos = tipos.stream().mapToInt(Integer::intValue).toArray();
+            this.columnasVolcado = columnasVolcado.length;
+            this.posicionId = columnas.indexOf("id");
+            this.posicionEmail = columnas.indexOf("email");
+            this.posicionAdministrador = columnas.indexOf("administrador");
+        }
+
+        String insert() {
+            String marcadores = String.join(", ", Collections.nCopies(columnas.length, "?"));
+            return "INSERT INTO " + nombre + " (" + String.join(", ", columnas) + ") VALUES (" + marcadores + ")";
+        }
+
+        // Valores de la fila para la copia indicada (la copia 0 es la fila original)
+        void valores(String[] fila, int copia, Object[] valores) {
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = i < columnasVolcado ? convertir(fila[i], tipos[i]) : Long.valueOf(0);
+            }
+            if (copia == 0) {
+                if (posicionId >= 0 && valores[posicionId] != null) {
+                    desplazamientoId = Math.max(desplazamientoId, ((Number) valores[posicionId]).longValue());
+                }
+                return;
+            }
+            if (posicionId >= 0 && valores[posicionId] != null) {
+                valores[posicionId] = ((Number) valores[posicionId]).longValue() + copia * desplazamientoId;
+            }
+            if (posicionEmail >= 0 && valores[posicionEmail] != null) {
+                String email = (String) valores[posicionEmail];
+                int arroba = email.indexOf('@');
+                valores[posicionEmail] = arroba < 0 ? email + "+" + copia
+                        : email.substring(0, arroba) + "+" + copia + email.substring(arroba);
+            }
+            // Solo puede haber un administrador: las copias son usuarios normales
+            if (posicionAdministrador >= 0) {
+                valores[posicionAdministrador] = Boolean.FALSE;
+            }
+        }
+
+        private static int tipo(ResultSetMetaData metadatos, String columna) throws SQLException {
+            for (int i = 1; i <= metadatos.getColumnCount(); i++) {
+                if (metadatos.getColumnName(i).equalsIgnoreCase(columna)) {
+                    return metadatos.getColumnType(i);
+                }
+            }
+            return Types.NULL;
+        }
+
+        private static Object convertir(String texto, int tipo) {
+            if (texto == null) {
+                return null;
+            }
+            switch (tipo) {
+                case Types.BOOLEAN:
+                case Types.BIT:
+                    return texto.equals("t") || texto.equalsIgnoreCase("true");
+                case Types.BIGINT:
+                    return Long.valueOf(texto);
+                case Types.INTEGER:
+                case Types.SMALLINT:
+                case Types.TINYINT:
+                    return Integer.valueOf(texto);
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    return new BigDecimal(texto);
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                case Types.REAL:
+                    return Double.valueOf(texto);
+                case Types.DATE:
+                    return Date.valueOf(texto);
+                case Types.TIMESTAMP:
+                    return Timestamp.valueOf(texto);
+                default:
+                    return texto;
+            }
+        }
+    }
+}
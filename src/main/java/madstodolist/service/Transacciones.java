@@ -0,0 +1,26 @@
+package madstodolist.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Utilidades de transacciones compartidas por los servicios
+public final class Transacciones {
+
+    private Transacciones() {
+    }
+
+    // Ejecuta la acción cuando la transacción activa hace commit (no se ejecuta si
+    // hace rollback); si no hay transacción, la ejecuta en el momento
+    public static void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
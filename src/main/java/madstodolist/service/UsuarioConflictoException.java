@@ -0,0 +1,9 @@
+package madstodolist.service;
+
+// El usuario ha cambiado en la base de datos desde que se leyó para editarlo
+public class UsuarioConflictoException extends UsuarioServiceException {
+
+    public UsuarioConflictoException(String message) {
+        super(message);
+    }
+}
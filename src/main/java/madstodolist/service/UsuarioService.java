@@ -10,18 +10,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class UsuarioService {
 
     Logger logger = LoggerFactory.getLogger(UsuarioService.class);
 
+    static final String MENSAJE_CONFLICTO = "Otro administrador ha modificado este usuario mientras lo editabas. " +
+            "Se muestran los datos actuales: revisa los cambios y vuelve a guardar.";
+
     public enum LoginStatus {LOGIN_OK, USER_NOT_FOUND, ERROR_PASSWORD, USER_BLOCKED}
 
     @Autowired
@@ -30,6 +41,16 @@ public class UsuarioService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private EstadisticasUsuariosService estadisticasUsuariosService;
+
+    // Avisa a todos los nodos de los cambios de rol, bloqueo o baja de un usuario
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     // Método para el login del usuario
     @Transactional(readOnly = true)
     public LoginStatus login(String eMail, String password) {
@@ -63,32 +84,70 @@ public class UsuarioService {
         }
 
         Usuario usuarioNuevo = modelMapper.map(usuarioData, Usuario.class);
+        usuarioNuevo.setFechaAlta(new Date());
         usuarioNuevo = usuarioRepository.save(usuarioNuevo);
+        estadisticasUsuariosService.registrarAlta(EstadisticasUsuariosService.Muestra.de(usuarioNuevo));
         return modelMapper.map(usuarioNuevo, UsuarioData.class);
     }
 
-    // Método para actualizar un usuario existente
+    // Método para actualizar un usuario existente.
+    // Solo se tocan los campos que cambian (la contraseña, si viene en blanco, se mantiene).
+    // Si usuarioData trae la versión leída y el usuario ha cambiado desde entonces, o si
+    // otra transacción lo modifica a la vez, se lanza UsuarioConflictoException.
     @Transactional
     public UsuarioData actualizarUsuario(Long id, UsuarioData usuarioData) {
         Usuario usuarioExistente = usuarioRepository.findById(id)
                 .orElseThrow(() -> new UsuarioServiceException("No existe usuario con id " + id));
+        if (usuarioData.getVersion() != null && !usuarioData.getVersion().equals(usuarioExistente.getVersion())) {
+            throw new UsuarioConflictoException(MENSAJE_CONFLICTO);
+        }
+        if (usuarioData.getEmail() == null || usuarioData.getEmail().isBlank()) {
+            throw new UsuarioServiceException("El usuario no tiene email");
+        }
+        EstadisticasUsuariosService.Muestra antes = EstadisticasUsuariosService.Muestra.de(usuarioExistente);
 
-        usuarioExistente.setNombre(usuarioData.getNombre());
-        usuarioExistente.setEmail(usuarioData.getEmail());
-        usuarioExistente.setPassword(usuarioData.getPassword());
-        usuarioExistente.setFechaNacimiento(usuarioData.getFechaNacimiento());
-        usuarioExistente.setAdministrador(usuarioData.isAdministrador());
+        if (!Objects.equals(usuarioExistente.getNombre(), usuarioData.getNombre())) {
+            usuarioExistente.setNombre(usuarioData.getNombre());
+        }
+        if (!Objects.equals(usuarioExistente.getEmail(), usuarioData.getEmail())) {
+            usuarioExistente.setEmail(usuarioData.getEmail());
+        }
+        if (usuarioData.getPassword() != null && !usuarioData.getPassword().isBlank()
+                && !usuarioData.getPassword().equals(usuarioExistente.getPassword())) {
+            usuarioExistente.setPassword(usuarioData.getPassword());
+        }
+        if (!mismaFecha(usuarioExistente.getFechaNacimiento(), usuarioData.getFechaNacimiento())) {
+            usuarioExistente.setFechaNacimiento(usuarioData.getFechaNacimiento());
+        }
+        if (usuarioExistente.isAdministrador() != usuarioData.isAdministrador()) {
+            usuarioExistente.setAdministrador(usuarioData.isAdministrador());
+        }
 
-        usuarioExistente = usuarioRepository.save(usuarioExistente);
+        try {
+            // El flush aquí hace que un conflicto de versión se vea dentro del método
+            usuarioExistente = usuarioRepository.saveAndFlush(usuarioExistente);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new UsuarioConflictoException(MENSAJE_CONFLICTO);
+        }
+        estadisticasUsuariosService.registrarCambio(antes, EstadisticasUsuariosService.Muestra.de(usuarioExistente));
+        busInvalidacion.publicarCambioUsuario(id);
         return modelMapper.map(usuarioExistente, UsuarioData.class);
     }
 
-    // Método para eliminar un usuario por ID
+    // Método para eliminar un usuario por ID.
+    // Si otra transacción lo modifica a la vez se lanza UsuarioConflictoException.
     @Transactional
     public void eliminarUsuario(Long idUsuario) {
         Usuario usuario = usuarioRepository.findById(idUsuario)
                 .orElseThrow(() -> new UsuarioServiceException("No existe usuario con id " + idUsuario));
-        usuarioRepository.delete(usuario);
+        try {
+            usuarioRepository.delete(usuario);
+            usuarioRepository.flush();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new UsuarioConflictoException(MENSAJE_CONFLICTO);
+        }
+        estadisticasUsuariosService.registrarBaja(EstadisticasUsuariosService.Muestra.de(usuario));
+        busInvalidacion.publicarCambioUsuario(idUsuario);
     }
 
     // Método para encontrar un usuario por su email
@@ -124,6 +183,41 @@ public class UsuarioService {
         return usuariosPage.map(usuario -> modelMapper.map(usuario, UsuarioData.class));
     }
 
+    // Método para recorrer los usuarios con id mayor que el cursor, en orden de id,
+    // sin construir una lista intermedia. Cada entidad se desvincula del contexto
+    // de persistencia tras pasarla al consumidor para que la memoria no crezca
+    // con el número de filas.
+    @Transactional(readOnly = true)
+    public void recorrerUsuarios(Long desdeId, int limite, Consumer<UsuarioData> consumidor) {
+        try (Stream<Usuario> usuarios = usuarioRepository.streamByIdGreaterThanOrderByIdAsc(
+                desdeId != null ? desdeId : 0L, PageRequest.of(0, limite))) {
+            usuarios.forEach(usuario -> {
+                consumidor.accept(toUsuarioData(usuario));
+                entityManager.detach(usuario);
+            });
+        }
+    }
+
+    // Método para procesar una página de usuarios leída en streaming. El procesador
+    // recibe un iterador perezoso que solo es válido durante la llamada, ya que la
+    // transacción y el cursor de la base de datos se cierran al terminar.
+    @Transactional(readOnly = true)
+    public void procesarPaginaUsuarios(int page, int size, Consumer<Iterator<UsuarioData>> procesador) {
+        try (Stream<Usuario> usuarios = usuarioRepository.streamAll(PageRequest.of(page, size))) {
+            procesador.accept(usuarios.map(usuario -> {
+                UsuarioData usuarioData = toUsuarioData(usuario);
+                entityManager.detach(usuario);
+                return usuarioData;
+            }).iterator());
+        }
+    }
+
+    // Método para obtener el número total de usuarios
+    @Transactional(readOnly = true)
+    public long contarUsuarios() {
+        return usuarioRepository.count();
+    }
+
     // Método para comprobar si ya existe un administrador en el sistema
     @Transactional(readOnly = true)
     public boolean existeAdministrador() {
@@ -132,13 +226,21 @@ public class UsuarioService {
                 .anyMatch(Usuario::isAdministrador);
     }
 
-    // Método para bloquear o desbloquear un usuario
+    // Método para bloquear o desbloquear un usuario.
+    // Si otra transacción lo modifica a la vez se lanza UsuarioConflictoException.
     @Transactional
     public void cambiarEstadoBloqueoUsuario(Long idUsuario, boolean bloquear) {
         Usuario usuario = usuarioRepository.findById(idUsuario)
                 .orElseThrow(() -> new UsuarioServiceException("No existe usuario con id " + idUsuario));
+        EstadisticasUsuariosService.Muestra antes = EstadisticasUsuariosService.Muestra.de(usuario);
         usuario.setBloqueado(bloquear);
-        usuarioRepository.save(usuario);
+        try {
+            usuario = usuarioRepository.saveAndFlush(usuario);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new UsuarioConflictoException(MENSAJE_CONFLICTO);
+        }
+        estadisticasUsuariosService.registrarCambio(antes, EstadisticasUsuariosService.Muestra.de(usuario));
+        busInvalidacion.publicarCambioUsuario(idUsuario);
     }
 
     // Método para verificar si un usuario está bloqueado
@@ -154,4 +256,27 @@ public class UsuarioService {
         Usuario usuario = usuarioRepository.findById(idUsuario).orElse(null);
         return usuario != null && usuario.isAdministrador();
     }
+
+    // La columna es de tipo fecha: al comparar se ignora la hora que pueda traer el Date
+    private static boolean mismaFecha(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return new java.sql.Date(a.getTime()).toLocalDate().equals(new java.sql.Date(b.getTime()).toLocalDate());
+    }
+
+    // Copia directa de la entidad al DTO para los recorridos masivos
+    // (evita el coste de reflexión de ModelMapper en cada fila)
+    private static UsuarioData toUsuarioData(Usuario usuario) {
+        UsuarioData usuarioData = new UsuarioData();
+        usuarioData.setId(usuario.getId());
+        usuarioData.setEmail(usuario.getEmail());
+        usuarioData.setNombre(usuario.getNombre());
+        usuarioData.setPassword(usuario.getPassword());
+        usuarioData.setFechaNacimiento(usuario.getFechaNacimiento());
+        usuarioData.setAdministrador(usuario.isAdministrador());
+        usuarioData.setBloqueado(usuario.isBloqueado());
+        usuarioData.setVersion(usuario.getVersion());
+        return usuarioData;
+    }
 }
@@ -0,0 +1,185 @@
+package madstodolist.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.jdbc.Sql;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Prueba de carga con una base de datos lenta: muchos clientes piden a la vez un usuario
+// por la API y se mide el rendimiento y la latencia p99. Cada sentencia SQL espera
+// carga.latencia-ms antes de ejecutarse. Se lanza con
+//   mvn test -Dtest=CargaBaseDatosLentaTest -Dbenchmark=true [-Dservidor.hilos-virtuales=true]
+// y opcionalmente -Dcarga.clientes, -Dcarga.duracion-s y -Dcarga.latencia-ms para comparar
+// el pool de Tomcat con los hilos virtuales (que requieren Java 21).
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CargaBaseDatosLentaTest extends PruebaConAdministrador {
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private Environment env;
+
+    @TestConfiguration
+    static class Configuracion {
+        // Envuelve el DataSource para que cada sentencia tarde carga.latencia-ms más
+        @Bean
+        static BeanPostProcessor baseDatosLenta(Environment env) {
+            long latenciaMs = env.getProperty("carga.latencia-ms", Long.class, 20L);
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource) || bean instanceof BaseDatosLenta) {
+                        return bean;
+                    }
+                    return new BaseDatosLenta((DataSource) bean, latenciaMs);
+                }
+            };
+        }
+    }
+
+    static class BaseDatosLenta extends DelegatingDataSource {
+        private final long latenciaMs;
+
+        BaseDatosLenta(DataSource destino, long latenciaMs) {
+            super(destino);
+            this.latenciaMs = latenciaMs;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return lenta(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String usuario, String password) throws SQLException {
+            return lenta(super.getConnection(usuario, password));
+        }
+
+        private Connection lenta(Connection conexion) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, metodo, argumentos) -> {
+                        Object resultado = invocar(conexion, metodo, argumentos);
+                        if (resultado instanceof Statement) {
+                            return lenta((Statement) resultado, metodo.getReturnType());
+                        }
+                        return resultado;
+                    });
+        }
+
+        // Las sentencias esperan antes de cada execute*
+        private Object lenta(Statement sentencia, Class<?> tipo) {
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{tipo},
+                    (proxy, metodo, argumentos) -> {
+                        if (metodo.getName().startsWith("execute")) {
+                            Thread.sleep(latenciaMs);
+                        }
+                        return invocar(sentencia, metodo, argumentos);
+                    });
+        }
+
+        private static Object invocar(Object destino, java.lang.reflect.Method metodo, Object[] argumentos) throws Throwable {
+            try {
+                return metodo.invoke(destino, argumentos);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static int get(String url) throws Exception {
+        HttpURLConnection conexion = (HttpURLConnection) new URL(url).openConnection();
+        conexion.setConnectTimeout(60000);
+        conexion.setReadTimeout(60000);
+        int estado = conexion.getResponseCode();
+        try (InputStream cuerpo = estado < 400 ? conexion.getInputStream() : conexion.getErrorStream()) {
+            if (cuerpo != null) cuerpo.readAllBytes();
+        }
+        return estado;
+    }
+
+    @Test
+    public void rendimientoConBaseDatosLenta() throws Exception {
+        // GIVEN
+
+        int clientes = Integer.getInteger("carga.clientes", 400);
+        int duracionS = Integer.getInteger("carga.duracion-s", 10);
+        Long adminId = addUsuariosBD(0);
+        String url = "http://localhost:" + puerto + "/api/v1/usuarios/" + adminId;
+        assertThat(get(url)).isEqualTo(200);
+
+        // WHEN
+
+        ExecutorService hilos = Executors.newFixedThreadPool(clientes);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger errores = new AtomicInteger();
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(duracionS);
+        List<Future<List<Long>>> resultados = new ArrayList<>();
+        for (int i = 0; i < clientes; i++) {
+            resultados.add(hilos.submit(() -> {
+                List<Long> latencias = new ArrayList<>();
+                salida.await();
+                while (System.nanoTime() < fin) {
+                    long inicio = System.nanoTime();
+                    if (get(url) == 200) {
+                        latencias.add(System.nanoTime() - inicio);
+                    } else {
+                        errores.incrementAndGet();
+                    }
+                }
+                return latencias;
+            }));
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        List<Long> todas = new ArrayList<>();
+        for (Future<List<Long>> resultado : resultados) {
+            todas.addAll(resultado.get(duracionS + 120L, TimeUnit.SECONDS));
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        hilos.shutdown();
+
+        // THEN
+
+        long[] ordenadas = todas.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(ordenadas);
+        assertThat(ordenadas).isNotEmpty();
+        System.out.printf("hilos-virtuales=%s (Java %d) clientes=%d latencia BD=%s ms: %.0f pet/s, p50 %.1f ms, p99 %.1f ms, máx %.1f ms, errores %d%n",
+                env.getProperty("servidor.hilos-virtuales", "false"), Runtime.version().feature(), clientes,
+                env.getProperty("carga.latencia-ms", "20"), ordenadas.length / segundos,
+                percentil(ordenadas, 0.50), percentil(ordenadas, 0.99), ordenadas[ordenadas.length - 1] / 1e6,
+                errores.get());
+        assertThat(errores.get()).isZero();
+    }
+
+    private static double percentil(long[] ordenadas, double fraccion) {
+        int i = (int) Math.ceil(fraccion * ordenadas.length) - 1;
+        return ordenadas[Math.max(i, 0)] / 1e6;
+    }
+}
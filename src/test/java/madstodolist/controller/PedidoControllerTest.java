@@ -0,0 +1,114 @@
+package madstodolist.controller;
+
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.dto.ProductoData;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.CarritoService;
+import madstodolist.service.ProductoService;
+import madstodolist.service.UsuarioService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PedidoControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Simulamos el usuario logeado
+    @MockBean
+    private ManagerUserSession managerUserSession;
+
+    // Crea un usuario logeado con una unidad del producto en el carrito
+    private Long comprador(Long productoId) {
+        UsuarioData usuario = new UsuarioData();
+        usuario.setEmail("comprador@umh.es");
+        usuario.setNombre("Comprador");
+        usuario.setPassword("123");
+        Long usuarioId = usuarioService.registrar(usuario).getId();
+        when(managerUserSession.usuarioLogeado()).thenReturn(usuarioId);
+        carritoService.anadirProducto(usuarioId, productoId, 1);
+        return usuarioId;
+    }
+
+    private Long crearProducto(int stock) {
+        ProductoData producto = new ProductoData();
+        producto.setNombre("Pelotas");
+        producto.setDeporte("Tenis");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setStock(stock);
+        return productoService.crearProducto(producto).getId();
+    }
+
+    @Test
+    public void compraGuardadaRedirigeAlPedido() throws Exception {
+        // GIVEN
+
+        Long productoId = crearProducto(5);
+        comprador(productoId);
+
+        // WHEN
+
+        MvcResult compra = mockMvc.perform(post("/carrito/comprar"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // THEN
+
+        mockMvc.perform(asyncDispatch(compra))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrlPattern("/pedidos/*"));
+    }
+
+    @Test
+    public void compraFallidaLlevaElMotivoAlCarrito() throws Exception {
+        // GIVEN
+        // El contador de este nodo cree que queda una unidad, pero otro nodo
+        // ya la ha vendido en la base de datos
+
+        Long productoId = crearProducto(1);
+        comprador(productoId);
+        jdbcTemplate.update("UPDATE productos SET stock = 0 WHERE id = ?", productoId);
+
+        // WHEN
+
+        MvcResult compra = mockMvc.perform(post("/carrito/comprar"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // THEN
+
+        mockMvc.perform(asyncDispatch(compra))
+                .andExpect(redirectedUrl("/carrito"))
+                .andExpect(flash().attribute("error", "No hay unidades suficientes para completar el pedido"));
+    }
+}
@@ -0,0 +1,48 @@
+package madstodolist.controller;
+
+import madstodolist.authentication.ManagerUserSession;
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+// Base de los tests de controladores que se ejecutan con un administrador logeado
+public abstract class PruebaConAdministrador {
+
+    @Autowired
+    protected UsuarioService usuarioService;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    // Simulamos el usuario logeado
+    @MockBean
+    protected ManagerUserSession managerUserSession;
+
+    // Crea el administrador, lo deja logeado y añade "numero" usuarios normales.
+    // Devuelve el id del administrador.
+    protected Long addUsuariosBD(int numero) {
+        UsuarioData admin = new UsuarioData();
+        admin.setEmail("admin@umh.es");
+        admin.setNombre("Administrador");
+        admin.setPassword("123");
+        admin.setAdministrador(true);
+        Long adminId = usuarioService.registrar(admin).getId();
+        when(managerUserSession.usuarioLogeado()).thenReturn(adminId);
+        when(managerUserSession.esAdministrador()).thenReturn(true);
+
+        List<Object[]> filas = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            filas.add(new Object[]{"usuario" + i + "@umh.es", "Usuario " + i, "123", java.sql.Date.valueOf("2000-01-01")});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO usuarios (email, nombre, password, fecha_nacimiento, " +
+                "administrador, bloqueado, version) VALUES (?, ?, ?, ?, false, false, 0)", filas);
+        return adminId;
+    }
+}
@@ -0,0 +1,83 @@
+package madstodolist.controller;
+
+import madstodolist.dto.UsuarioData;
+import madstodolist.service.UsuarioService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Sesiones reales (sin simular ManagerUserSession) con el bus de invalidación local:
+// los cambios de rol y bloqueo se ven en la siguiente petición de la sesión abierta
+@SpringBootTest
+@AutoConfigureMockMvc
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class SesionUsuarioTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    private UsuarioData registrar(String email, boolean administrador) {
+        UsuarioData usuario = new UsuarioData();
+        usuario.setEmail(email);
+        usuario.setNombre("Usuario");
+        usuario.setPassword("123");
+        usuario.setAdministrador(administrador);
+        return usuarioService.registrar(usuario);
+    }
+
+    private MockHttpSession login(String email) throws Exception {
+        MockHttpSession sesion = new MockHttpSession();
+        mockMvc.perform(post("/login").session(sesion).param("eMail", email).param("password", "123"))
+                .andExpect(status().is3xxRedirection());
+        return sesion;
+    }
+
+    @Test
+    public void quitarElRolDeAdministradorSeVeEnLaSesionAbierta() throws Exception {
+        // GIVEN
+        // Un administrador con sesión abierta que ya ha usado una página de administración
+
+        UsuarioData admin = registrar("admin@umh.es", true);
+        MockHttpSession sesion = login("admin@umh.es");
+        mockMvc.perform(get("/registrados").session(sesion)).andExpect(status().isOk());
+
+        // WHEN
+
+        admin.setAdministrador(false);
+        usuarioService.actualizarUsuario(admin.getId(), admin);
+
+        // THEN
+
+        mockMvc.perform(get("/registrados").session(sesion)).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void bloquearAUnUsuarioCierraSuSesionAbierta() throws Exception {
+        // GIVEN
+
+        UsuarioData usuario = registrar("usuario@umh.es", false);
+        MockHttpSession sesion = login("usuario@umh.es");
+        mockMvc.perform(get("/registrados/" + usuario.getId()).session(sesion)).andExpect(status().isOk());
+
+        // WHEN
+
+        usuarioService.cambiarEstadoBloqueoUsuario(usuario.getId(), true);
+
+        // THEN
+
+        mockMvc.perform(get("/registrados/" + usuario.getId()).session(sesion))
+                .andExpect(redirectedUrl("/login"));
+    }
+}
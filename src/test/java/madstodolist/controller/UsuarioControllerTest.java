@@ -0,0 +1,157 @@
+package madstodolist.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class UsuarioControllerTest extends PruebaConAdministrador {
+
+    private static final Pattern EMAIL_FILA = Pattern.compile("<td>(usuario\\d+@umh\\.es)</td>");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private UsuarioController usuarioController;
+
+    // Renderiza una página del listado con el umbral de streaming indicado
+    private String listado(int page, int size, int umbral) throws Exception {
+        Object umbralOriginal = ReflectionTestUtils.getField(usuarioController, "umbralStreaming");
+        ReflectionTestUtils.setField(usuarioController, "umbralStreaming", umbral);
+        try {
+            return mockMvc.perform(get("/registrados").param("page", "" + page).param("size", "" + size))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+        } finally {
+            ReflectionTestUtils.setField(usuarioController, "umbralStreaming", umbralOriginal);
+        }
+    }
+
+    private static List<String> emails(String html) {
+        List<String> emails = new ArrayList<>();
+        Matcher m = EMAIL_FILA.matcher(html);
+        while (m.find()) {
+            emails.add(m.group(1));
+        }
+        return emails;
+    }
+
+    @Test
+    public void listadoEnStreamingIgualQueSinStreaming() throws Exception {
+        // GIVEN
+        addUsuariosBD(45);
+
+        // WHEN
+        // la segunda página de 20 usuarios con y sin streaming
+        String enStreaming = listado(1, 20, 1);
+        String sinStreaming = listado(1, 20, Integer.MAX_VALUE);
+
+        // THEN
+        assertThat(emails(enStreaming)).hasSize(20).isEqualTo(emails(sinStreaming));
+        assertThat(enStreaming).contains("</html>");
+    }
+
+    // Bytes reservados en el heap por el hilo de Tomcat que atiende el listado, con páginas
+    // de 10, 1.000 y 50.000 filas, con y sin streaming. Se usa el servidor real y el cliente
+    // descarta la respuesta según llega. Solo se ejecuta con -Dbenchmark=true.
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkMemoriaListado() throws Exception {
+        // GIVEN
+        addUsuariosBD(50000);
+
+        for (int size : new int[]{10, 1000, 50000}) {
+            long[] reservados = new long[2];
+            long[] bytesRespuesta = new long[2];
+            int[] umbrales = {1, Integer.MAX_VALUE};
+            for (int modo = 0; modo < 2; modo++) {
+                Object umbralOriginal = ReflectionTestUtils.getField(usuarioController, "umbralStreaming");
+                ReflectionTestUtils.setField(usuarioController, "umbralStreaming", umbrales[modo]);
+                try {
+                    // calentamiento
+                    for (int i = 0; i < 3; i++) {
+                        descargar(size);
+                    }
+                    // WHEN
+                    bytesRespuesta[modo] = descargar(size);
+                    reservados[modo] = MedidorReservas.ultimaPeticion;
+                } finally {
+                    ReflectionTestUtils.setField(usuarioController, "umbralStreaming", umbralOriginal);
+                }
+            }
+
+            // THEN
+            assertThat(bytesRespuesta[0]).isEqualTo(bytesRespuesta[1]);
+            System.out.printf("size=%-6d reservado con streaming %,15d B | sin streaming %,15d B | respuesta %,d B%n",
+                    size, reservados[0], reservados[1], bytesRespuesta[0]);
+        }
+    }
+
+    // Pide la primera página por HTTP y devuelve los bytes recibidos
+    private long descargar(int size) throws Exception {
+        HttpURLConnection conexion = (HttpURLConnection)
+                new URL("http://localhost:" + puerto + "/registrados?page=0&size=" + size).openConnection();
+        long total = 0;
+        try (InputStream in = conexion.getInputStream()) {
+            byte[] buffer = new byte[65536];
+            int leidos;
+            while ((leidos = in.read(buffer)) != -1) {
+                total += leidos;
+            }
+        }
+        assertThat(conexion.getResponseCode()).isEqualTo(200);
+        return total;
+    }
+
+    // Anota los bytes reservados por el hilo que atiende cada petición
+    static class MedidorReservas implements Filter {
+        static volatile long ultimaPeticion;
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long hilo = Thread.currentThread().getId();
+            long antes = hilos.getThreadAllocatedBytes(hilo);
+            chain.doFilter(request, response);
+            ultimaPeticion = hilos.getThreadAllocatedBytes(hilo) - antes;
+        }
+    }
+
+    @TestConfiguration
+    static class ConfiguracionMedidor {
+        @Bean
+        public MedidorReservas medidorReservas() {
+            return new MedidorReservas();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package madstodolist.controller;
+
+import madstodolist.dto.UsuarioData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class UsuarioRestControllerTest extends PruebaConAdministrador {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void listadoPaginadoPorCursor() throws Exception {
+        // GIVEN
+        // El administrador y tres usuarios más
+        Long adminId = addUsuariosBD(3);
+
+        // WHEN, THEN
+        // la primera página trae dos usuarios y el cursor de la siguiente
+        MvcResult primera = mockMvc.perform(get("/api/v1/usuarios").param("limite", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usuarios.length()").value(2))
+                .andExpect(jsonPath("$.usuarios[0].id").value(adminId))
+                .andExpect(jsonPath("$.usuarios[0].password").doesNotExist())
+                .andExpect(jsonPath("$.siguiente").exists())
+                .andReturn();
+        String siguiente = primera.getResponse().getContentAsString().replaceAll(".*\"siguiente\":(\\d+).*", "$1");
+
+        // y la segunda los dos restantes, sin cursor
+        mockMvc.perform(get("/api/v1/usuarios").param("desde", siguiente).param("limite", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usuarios.length()").value(2))
+                .andExpect(jsonPath("$.usuarios[1].email").value("usuario2@umh.es"))
+                .andExpect(jsonPath("$.siguiente").doesNotExist());
+    }
+
+    @Test
+    public void obtenerUsuarioConEtag() throws Exception {
+        // GIVEN
+        Long adminId = addUsuariosBD(0);
+
+        // WHEN
+        MvcResult respuesta = mockMvc.perform(get("/api/v1/usuarios/" + adminId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("admin@umh.es"))
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+
+        // THEN
+        // con el mismo ETag la respuesta es 304 sin cuerpo
+        mockMvc.perform(get("/api/v1/usuarios/" + adminId)
+                        .header("If-None-Match", respuesta.getResponse().getHeader("ETag")))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void listadoSoloParaAdministradores() throws Exception {
+        // GIVEN
+        Long adminId = addUsuariosBD(1);
+        when(managerUserSession.esAdministrador()).thenReturn(false);
+
+        // WHEN, THEN
+        mockMvc.perform(get("/api/v1/usuarios"))
+                .andExpect(status().isUnauthorized());
+        // el propio usuario sí puede consultarse a sí mismo
+        mockMvc.perform(get("/api/v1/usuarios/" + adminId))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void actualizarSoloCambiaLosCamposEnviados() throws Exception {
+        // GIVEN
+        Long adminId = addUsuariosBD(1);
+        Long usuarioId = usuarioService.findByEmail("usuario0@umh.es").getId();
+
+        // WHEN
+        mockMvc.perform(put("/api/v1/usuarios/" + usuarioId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Nuevo nombre\"}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(put("/api/v1/usuarios/" + adminId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Jefe\"}"))
+                .andExpect(status().isNoContent());
+
+        // THEN
+        // el email y la fecha de nacimiento se conservan y el administrador lo sigue siendo
+        UsuarioData usuario = usuarioService.findById(usuarioId);
+        assertThat(usuario.getNombre()).isEqualTo("Nuevo nombre");
+        assertThat(usuario.getEmail()).isEqualTo("usuario0@umh.es");
+        assertThat(usuario.getFechaNacimiento()).isNotNull();
+        assertThat(usuarioService.findById(adminId).isAdministrador()).isTrue();
+    }
+
+    @Test
+    public void actualizarConDatosNoValidosDevuelve400() throws Exception {
+        // GIVEN
+        addUsuariosBD(1);
+        Long usuarioId = usuarioService.findByEmail("usuario0@umh.es").getId();
+
+        // WHEN, THEN
+        mockMvc.perform(put("/api/v1/usuarios/" + usuarioId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": null}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("El usuario no tiene email"));
+        mockMvc.perform(put("/api/v1/usuarios/" + usuarioId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"administrador\": \"quizá\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/api/v1/usuarios/" + (usuarioId + 1000))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isNotFound());
+        assertThat(usuarioService.findById(usuarioId).getEmail()).isEqualTo("usuario0@umh.es");
+    }
+
+    // Comparación de rendimiento entre el API JSON y las vistas HTML equivalentes.
+    // Es lenta, así que solo se ejecuta con -Dbenchmark=true.
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkJsonFrenteAHtml() throws Exception {
+        // GIVEN
+        Long adminId = addUsuariosBD(2000);
+
+        // WHEN
+        double[] listadoHtml = medir(get("/registrados").param("size", "50"));
+        double[] listadoJson = medir(get("/api/v1/usuarios").param("limite", "50"));
+        double[] detalleHtml = medir(get("/registrados/" + adminId));
+        double[] detalleJson = medir(get("/api/v1/usuarios/" + adminId));
+
+        // THEN
+        System.out.printf("Listado de 50 usuarios  HTML: %8.0f pet/s %7.0f bytes | JSON: %8.0f pet/s %7.0f bytes%n",
+                listadoHtml[0], listadoHtml[1], listadoJson[0], listadoJson[1]);
+        System.out.printf("Detalle de un usuario   HTML: %8.0f pet/s %7.0f bytes | JSON: %8.0f pet/s %7.0f bytes%n",
+                detalleHtml[0], detalleHtml[1], detalleJson[0], detalleJson[1]);
+        // Los tiempos solo se muestran: compararlos aquí haría el test inestable
+        for (double[] medida : new double[][]{listadoHtml, listadoJson, detalleHtml, detalleJson}) {
+            assertThat(medida[1]).isPositive();
+        }
+    }
+
+    // Devuelve {peticiones por segundo, bytes por respuesta} tras un calentamiento
+    private double[] medir(MockHttpServletRequestBuilder peticion) throws Exception {
+        for (int i = 0; i < 300; i++) {
+            mockMvc.perform(peticion).andExpect(status().isOk());
+        }
+        int peticiones = 0;
+        long bytes = 0;
+        long inicio = System.nanoTime();
+        long fin = inicio + 3_000_000_000L;
+        while (System.nanoTime() < fin) {
+            bytes += mockMvc.perform(peticion).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsByteArray().length;
+            peticiones++;
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        return new double[]{peticiones / segundos, (double) bytes / peticiones};
+    }
+}
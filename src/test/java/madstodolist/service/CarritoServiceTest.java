@@ -0,0 +1,145 @@
+package madstodolist.service;
+
+import madstodolist.dto.ProductoData;
+import madstodolist.dto.UsuarioData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class CarritoServiceTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void restaurarExpiracion() {
+        ReflectionTestUtils.setField(carritoService, "expiracionMs", 1800000L);
+    }
+
+    private Long crearUsuario() {
+        UsuarioData usuario = new UsuarioData();
+        usuario.setEmail("carrito@umh.es");
+        usuario.setNombre("Carrito");
+        usuario.setPassword("123");
+        return usuarioService.registrar(usuario).getId();
+    }
+
+    private Long crearProducto(String nombre) {
+        ProductoData producto = new ProductoData();
+        producto.setNombre(nombre);
+        producto.setDeporte("Tenis");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setStock(100);
+        return productoService.crearProducto(producto).getId();
+    }
+
+    private Map<Long, Integer> lineasBD(Long usuarioId) {
+        Map<Long, Integer> lineas = new HashMap<>();
+        jdbcTemplate.query("SELECT producto_id, cantidad FROM carrito_lineas WHERE usuario_id = ?",
+                fila -> {
+                    lineas.put(fila.getLong(1), fila.getInt(2));
+                }, usuarioId);
+        return lineas;
+    }
+
+    @Test
+    public void operacionesConcurrentesSobreElMismoCarrito() throws Exception {
+        // GIVEN
+        // Varios hilos añaden unidades de un producto propio, otro añade y quita
+        // el mismo producto y otro vuelca y expulsa el carrito sin parar (con
+        // expiración 0 se expulsa en cuanto está persistido y se vuelve a cargar)
+
+        final int hilosAnadir = 4;
+        final int unidades = 60;
+        Long usuarioId = crearUsuario();
+        List<Long> productos = new ArrayList<>();
+        for (int i = 0; i < hilosAnadir; i++) {
+            productos.add(crearProducto("Producto " + i));
+        }
+        Long productoQuitado = crearProducto("Quitado");
+        ReflectionTestUtils.setField(carritoService, "expiracionMs", 0L);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(hilosAnadir + 2);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicBoolean terminado = new AtomicBoolean();
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // WHEN
+
+        for (Long productoId : productos) {
+            tareas.add(hilos.submit(() -> {
+                salida.await();
+                for (int i = 0; i < unidades; i++) {
+                    carritoService.anadirProducto(usuarioId, productoId, 1);
+                }
+                return null;
+            }));
+        }
+        tareas.add(hilos.submit(() -> {
+            salida.await();
+            for (int i = 0; i < unidades; i++) {
+                carritoService.anadirProducto(usuarioId, productoQuitado, 2);
+                carritoService.eliminarProducto(usuarioId, productoQuitado);
+            }
+            return null;
+        }));
+        Future<?> mantenimiento = hilos.submit(() -> {
+            salida.await();
+            while (!terminado.get()) {
+                carritoService.volcarCambios();
+                carritoService.expulsarInactivos();
+            }
+            return null;
+        });
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        terminado.set(true);
+        mantenimiento.get(60, TimeUnit.SECONDS);
+        hilos.shutdown();
+
+        // THEN
+
+        assertThat(carritoService.numeroArticulos(usuarioId)).isEqualTo(hilosAnadir * unidades);
+
+        carritoService.volcarCambios();
+        Map<Long, Integer> esperadas = new HashMap<>();
+        for (Long productoId : productos) {
+            esperadas.put(productoId, unidades);
+        }
+        assertThat(lineasBD(usuarioId)).isEqualTo(esperadas);
+
+        // Al expulsarlo y volver a cargarlo de la base de datos el contenido es el mismo
+        Thread.sleep(1);
+        carritoService.expulsarInactivos();
+        assertThat(carritoService.numeroArticulos(usuarioId)).isEqualTo(hilosAnadir * unidades);
+        assertThat(carritoService.getCarrito(usuarioId).getLineas()).hasSize(hilosAnadir);
+    }
+}
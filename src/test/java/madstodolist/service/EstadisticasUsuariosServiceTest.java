@@ -0,0 +1,114 @@
+package madstodolist.service;
+
+import madstodolist.dto.EstadisticasUsuariosData;
+import madstodolist.dto.UsuarioData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class EstadisticasUsuariosServiceTest {
+
+    @Autowired
+    private EstadisticasUsuariosService estadisticasUsuariosService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void lasAltasQueSeCruzanConLaReconciliacionSeCuentanUnaVez() throws Exception {
+        // GIVEN
+        // Varios hilos registran usuarios mientras otro reconcilia sin parar
+
+        final int hilosAltas = 4;
+        final int altasPorHilo = 50;
+        estadisticasUsuariosService.reconciliar();
+        ExecutorService hilos = Executors.newFixedThreadPool(hilosAltas + 1);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicBoolean terminado = new AtomicBoolean();
+        List<Future<?>> altas = new ArrayList<>();
+
+        // WHEN
+
+        for (int h = 0; h < hilosAltas; h++) {
+            int hilo = h;
+            altas.add(hilos.submit(() -> {
+                salida.await();
+                for (int i = 0; i < altasPorHilo; i++) {
+                    UsuarioData usuario = new UsuarioData();
+                    usuario.setEmail("usuario" + hilo + "-" + i + "@umh.es");
+                    usuario.setNombre("Usuario");
+                    usuario.setPassword("123");
+                    usuarioService.registrar(usuario);
+                }
+                return null;
+            }));
+        }
+        Future<Integer> reconciliaciones = hilos.submit(() -> {
+            salida.await();
+            int hechas = 0;
+            while (!terminado.get()) {
+                estadisticasUsuariosService.reconciliar();
+                hechas++;
+            }
+            return hechas;
+        });
+        salida.countDown();
+        for (Future<?> alta : altas) {
+            alta.get(60, TimeUnit.SECONDS);
+        }
+        terminado.set(true);
+        int hechas = reconciliaciones.get(60, TimeUnit.SECONDS);
+        hilos.shutdown();
+
+        // THEN
+        // Sin volver a reconciliar, lo incremental coincide con la base de datos
+
+        EstadisticasUsuariosData estadisticas = estadisticasUsuariosService.getEstadisticas();
+        String hoy = LocalDate.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+        assertThat(hechas).isPositive();
+        assertThat(estadisticas.getTotalUsuarios()).isEqualTo(hilosAltas * altasPorHilo);
+        assertThat(estadisticas.getTotalUsuarios())
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usuarios", Long.class));
+        assertThat(estadisticas.getAltasPorDia().get(hoy)).isEqualTo(hilosAltas * altasPorHilo);
+    }
+
+    @Test
+    public void laReconciliacionReconstruyeLasAltasPorDiaDesdeLaBaseDeDatos() {
+        // GIVEN
+        // Altas de hace dos días cargadas directamente en la base de datos, que
+        // los contadores en memoria no han visto
+
+        LocalDate haceDosDias = LocalDate.now().minusDays(2);
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO usuarios (email, nombre, password, fecha_alta, administrador, bloqueado, version) " +
+                    "VALUES (?, 'Usuario', '123', ?, false, false, 0)", "antiguo" + i + "@umh.es", java.sql.Date.valueOf(haceDosDias));
+        }
+
+        // WHEN
+
+        estadisticasUsuariosService.reconciliar();
+
+        // THEN
+
+        EstadisticasUsuariosData estadisticas = estadisticasUsuariosService.getEstadisticas();
+        assertThat(estadisticas.getAltasPorDia().get(haceDosDias.format(DateTimeFormatter.ofPattern("dd-MM-yyyy"))))
+                .isEqualTo(3);
+        assertThat(estadisticas.getTotalUsuarios()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,94 @@
+package madstodolist.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EstadoUsuariosServiceTest {
+
+    // Servicio cuya consulta devuelve "administrador" y, la primera vez, ejecuta
+    // "durante" mientras lee, como una invalidación que llega a mitad de la lectura
+    private EstadoUsuariosService servicio(AtomicBoolean administrador, Runnable durante) {
+        EstadoUsuariosService servicio = new EstadoUsuariosService();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        AtomicBoolean primera = new AtomicBoolean(true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), (Object) any())).thenAnswer(invocacion -> {
+            EstadoUsuariosService.Estado leido = new EstadoUsuariosService.Estado(administrador.get(), false);
+            if (primera.getAndSet(false)) {
+                durante.run();
+            }
+            return List.of(leido);
+        });
+        ReflectionTestUtils.setField(servicio, "jdbcTemplate", jdbcTemplate);
+        return servicio;
+    }
+
+    @Test
+    public void unaLecturaQueSeCruzaConUnaInvalidacionNoSeGuarda() {
+        // GIVEN
+        // Mientras se lee el usuario 1 como administrador le quitan el rol y se invalida
+
+        AtomicBoolean administrador = new AtomicBoolean(true);
+        EstadoUsuariosService[] servicio = new EstadoUsuariosService[1];
+        servicio[0] = servicio(administrador, () -> {
+            administrador.set(false);
+            servicio[0].invalidar(1L);
+        });
+
+        // WHEN
+
+        servicio[0].estado(1L);
+
+        // THEN
+        // La siguiente consulta vuelve a la base de datos y ve el cambio
+
+        assertThat(servicio[0].estado(1L).isAdministrador()).isFalse();
+    }
+
+    @Test
+    public void unaInvalidacionGlobalDuranteLaLecturaTambienLaDescarta() {
+        // GIVEN
+
+        AtomicBoolean administrador = new AtomicBoolean(true);
+        EstadoUsuariosService[] servicio = new EstadoUsuariosService[1];
+        servicio[0] = servicio(administrador, () -> {
+            administrador.set(false);
+            servicio[0].invalidar(null);
+        });
+
+        // WHEN
+
+        servicio[0].estado(1L);
+
+        // THEN
+
+        assertThat(servicio[0].estado(1L).isAdministrador()).isFalse();
+    }
+
+    @Test
+    public void sinInvalidacionesElEstadoSeGuarda() {
+        // GIVEN
+
+        AtomicBoolean administrador = new AtomicBoolean(true);
+        EstadoUsuariosService servicio = servicio(administrador, () -> { });
+        servicio.estado(1L);
+
+        // WHEN
+        // Cambia en la base de datos pero nadie avisa
+
+        administrador.set(false);
+
+        // THEN
+
+        assertThat(servicio.estado(1L).isAdministrador()).isTrue();
+    }
+}
@@ -0,0 +1,200 @@
+package madstodolist.service;
+
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.model.Producto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndiceCatalogoTest {
+
+    private static Producto producto(long id, String nombre, int popularidad) {
+        Producto producto = new Producto(nombre);
+        producto.setId(id);
+        producto.setDeporte("Tenis");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setPopularidad(popularidad);
+        return producto;
+    }
+
+    private static long[] ordenPorPopularidad(IndiceCatalogo indice) {
+        FiltroProductosData filtro = new FiltroProductosData();
+        filtro.setOrden(FiltroProductosData.Orden.POPULARIDAD);
+        return indice.buscar(filtro, 0, 10).ids;
+    }
+
+    @Test
+    public void losCambiosDuranteLaReconstruccionNoSePierden() {
+        // GIVEN
+        // Un índice con los productos 1 y 2 que se reconstruye mientras llegan
+        // el alta del 3 y la baja del 2
+
+        IndiceCatalogo indice = new IndiceCatalogo();
+        indice.reconstruir(List.of(producto(1, "Raqueta", 0), producto(2, "Pelotas", 0)).iterator(), 2);
+
+        indice.empezarReconstruccion();
+        Iterator<Producto> lectura = List.of(producto(1, "Raqueta", 0), producto(2, "Pelotas", 0)).iterator();
+        Iterator<Producto> conCambios = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return lectura.hasNext();
+            }
+
+            @Override
+            public Producto next() {
+                Producto siguiente = lectura.next();
+                if (siguiente.getId() == 2) {
+                    indice.indexar(producto(3, "Zapatillas", 0));
+                    indice.eliminar(2L);
+                }
+                return siguiente;
+            }
+        };
+
+        // WHEN
+
+        boolean completo = indice.reconstruir(conCambios, 2);
+
+        // THEN
+
+        assertThat(completo).isTrue();
+        assertThat(indice.contiene(1L)).isTrue();
+        assertThat(indice.contiene(2L)).isFalse();
+        assertThat(indice.contiene(3L)).isTrue();
+        assertThat(indice.getNumeroProductos()).isEqualTo(2);
+    }
+
+    @Test
+    public void unAltaFueraDeOrdenDuranteLaReconstruccionPideOtra() {
+        // GIVEN
+
+        IndiceCatalogo indice = new IndiceCatalogo();
+        indice.empezarReconstruccion();
+        indice.indexar(producto(1, "Raqueta", 0));
+
+        // WHEN
+        // La lectura ya trae un producto con id mayor
+
+        boolean completo = indice.reconstruir(List.of(producto(5, "Pelotas", 0)).iterator(), 1);
+
+        // THEN
+
+        assertThat(completo).isFalse();
+    }
+
+    @Test
+    public void editarUnProductoNoPisaSuPopularidad() {
+        // GIVEN
+
+        IndiceCatalogo indice = new IndiceCatalogo();
+        indice.reconstruir(List.of(producto(1, "Raqueta", 5), producto(2, "Pelotas", 3)).iterator(), 2);
+
+        // WHEN
+        // Se suman visitas al 2 y después se edita con la popularidad leída antes
+
+        indice.sumarPopularidad(Map.of(2L, 4));
+        indice.indexar(producto(2, "Pelotas de pádel", 3));
+
+        // THEN
+
+        assertThat(ordenPorPopularidad(indice)).containsExactly(2L, 1L);
+    }
+
+    // Catálogo sintético de 500.000 productos (10 deportes, 200 marcas, 12 tallas y
+    // precios aleatorios): tiempo de carga, memoria del índice, latencia p50/p99 de
+    // varias búsquedas y coste de las actualizaciones incrementales.
+    // Solo se ejecuta con -Dbenchmark=true.
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkCatalogoGrande() {
+        // GIVEN
+        final int numeroProductos = 500_000;
+        Random aleatorio = new Random(42);
+        List<Producto> productos = new ArrayList<>(numeroProductos);
+        for (int i = 1; i <= numeroProductos; i++) {
+            Producto producto = producto(i, "Producto " + i, aleatorio.nextInt(1000));
+            producto.setDeporte("Deporte " + aleatorio.nextInt(10));
+            producto.setMarca("Marca " + aleatorio.nextInt(200));
+            producto.setTalla("Talla " + aleatorio.nextInt(12));
+            producto.setPrecio(BigDecimal.valueOf(aleatorio.nextInt(30000), 2));
+            productos.add(producto);
+        }
+
+        // WHEN
+        long memoriaAntes = memoriaUsada();
+        long inicio = System.nanoTime();
+        IndiceCatalogo indice = new IndiceCatalogo();
+        indice.reconstruir(productos.iterator(), numeroProductos);
+        long cargaMs = (System.nanoTime() - inicio) / 1_000_000;
+        long memoriaIndice = memoriaUsada() - memoriaAntes;
+
+        // THEN
+        assertThat(indice.getNumeroProductos()).isEqualTo(numeroProductos);
+        System.out.printf("%,d productos: carga %d ms, índice ~%d MB%n",
+                numeroProductos, cargaMs, memoriaIndice / (1024 * 1024));
+
+        FiltroProductosData sinFiltro = new FiltroProductosData();
+        FiltroProductosData dosDeportes = new FiltroProductosData();
+        dosDeportes.setDeporte(List.of("Deporte 1", "Deporte 2"));
+        dosDeportes.setOrden(FiltroProductosData.Orden.PRECIO_ASC);
+        FiltroProductosData cuatroFacetas = new FiltroProductosData();
+        cuatroFacetas.setDeporte(List.of("Deporte 3"));
+        cuatroFacetas.setMarca(List.of("Marca 7", "Marca 8", "Marca 9"));
+        cuatroFacetas.setTalla(List.of("Talla 4"));
+        cuatroFacetas.setPrecio(List.of(1, 2));
+        cuatroFacetas.setOrden(FiltroProductosData.Orden.POPULARIDAD);
+        FiltroProductosData porPopularidad = new FiltroProductosData();
+        porPopularidad.setOrden(FiltroProductosData.Orden.POPULARIDAD);
+
+        medirBusqueda(indice, "sin filtro", sinFiltro, numeroProductos);
+        medirBusqueda(indice, "2 deportes, precio asc", dosDeportes, -1);
+        medirBusqueda(indice, "4 facetas, popularidad", cuatroFacetas, -1);
+        medirBusqueda(indice, "sin filtro, popularidad", porPopularidad, numeroProductos);
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            Producto producto = productos.get(aleatorio.nextInt(numeroProductos));
+            producto.setPrecio(BigDecimal.valueOf(aleatorio.nextInt(30000), 2));
+            assertThat(indice.indexar(producto)).isTrue();
+        }
+        System.out.printf("10.000 actualizaciones incrementales: %d ms%n", (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    // Latencias p50 y p99 de una búsqueda de la primera página de 20 productos
+    private static void medirBusqueda(IndiceCatalogo indice, String nombre, FiltroProductosData filtro, int totalEsperado) {
+        for (int i = 0; i < 200; i++) {
+            indice.buscar(filtro, 0, 20);
+        }
+        long[] latencias = new long[1000];
+        for (int i = 0; i < latencias.length; i++) {
+            long inicio = System.nanoTime();
+            IndiceCatalogo.Resultado resultado = indice.buscar(filtro, 0, 20);
+            latencias[i] = System.nanoTime() - inicio;
+            assertThat(resultado.ids).isNotEmpty();
+            if (totalEsperado >= 0) {
+                assertThat(resultado.total).isEqualTo(totalEsperado);
+            }
+        }
+        Arrays.sort(latencias);
+        System.out.printf("%-26s p50 %5.1f ms  p99 %5.1f ms%n", nombre,
+                latencias[latencias.length / 2] / 1e6, latencias[latencias.length * 99 / 100] / 1e6);
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,140 @@
+package madstodolist.service;
+
+import madstodolist.dto.ProductoData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class InventarioServiceTest {
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long crearProducto(String nombre, int stock) {
+        ProductoData producto = new ProductoData();
+        producto.setNombre(nombre);
+        producto.setDeporte("Tenis");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setStock(stock);
+        return productoService.crearProducto(producto).getId();
+    }
+
+    @Test
+    public void laReconciliacionNoRestaDosVecesUnaVentaRecienGuardada() throws Exception {
+        // GIVEN
+        // Una venta de 3 unidades de 10 confirmada en memoria
+
+        Long productoId = crearProducto("Pelotas", 10);
+        inventarioService.confirmar(inventarioService.reservar(productoId, 3));
+        ExecutorService hilo = Executors.newSingleThreadExecutor();
+        List<Future<?>> reconciliacion = new ArrayList<>();
+
+        // WHEN
+        // Se guarda la venta y, justo tras el commit, otro hilo reconcilia
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            jdbcTemplate.update("UPDATE productos SET stock = stock - 3 WHERE id = ?", productoId);
+            inventarioService.registrarVentasAlConfirmar(new long[]{productoId}, new int[]{3});
+            Transacciones.despuesDelCommit(() -> {
+                reconciliacion.add(hilo.submit(inventarioService::reconciliar));
+                try {
+                    reconciliacion.get(0).get(200, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // La reconciliación espera a que se anote la venta
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        });
+        reconciliacion.get(0).get(10, TimeUnit.SECONDS);
+        hilo.shutdown();
+
+        // THEN
+
+        assertThat(inventarioService.disponibles(productoId)).isEqualTo(7);
+        inventarioService.reconciliar();
+        assertThat(inventarioService.disponibles(productoId)).isEqualTo(7);
+    }
+
+    // Reservas y confirmaciones por segundo con 1 a 16 hilos, sobre un único producto
+    // (todos compiten por el mismo contador) y sobre un producto por hilo.
+    // Solo se ejecuta con -Dbenchmark=true.
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkReservarYConfirmar() throws Exception {
+        // GIVEN
+        final int maximoHilos = 16;
+        final long duracionMs = 1000;
+        List<Long> productos = new ArrayList<>(maximoHilos);
+        for (int i = 0; i < maximoHilos; i++) {
+            productos.add(crearProducto("Producto " + i, Integer.MAX_VALUE / 2));
+        }
+
+        for (int hilos : new int[]{1, 2, 4, 8, 16}) {
+            for (boolean mismoProducto : new boolean[]{true, false}) {
+                // calentamiento
+                medir(productos, hilos, mismoProducto, 200);
+                // WHEN
+                long operaciones = medir(productos, hilos, mismoProducto, duracionMs);
+                // THEN
+                assertThat(operaciones).isPositive();
+                System.out.printf("hilos=%-2d %-18s %,12.0f reservas+confirmaciones/s%n",
+                        hilos, mismoProducto ? "mismo producto" : "producto por hilo", operaciones * 1000.0 / duracionMs);
+            }
+        }
+    }
+
+    // Reserva y confirma una unidad en bucle durante "duracionMs"; devuelve las operaciones hechas
+    private long medir(List<Long> productos, int hilos, boolean mismoProducto, long duracionMs) throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicBoolean terminado = new AtomicBoolean();
+        List<Future<Long>> resultados = new ArrayList<>(hilos);
+        for (int h = 0; h < hilos; h++) {
+            Long productoId = productos.get(mismoProducto ? 0 : h);
+            resultados.add(ejecutor.submit(() -> {
+                salida.await();
+                long hechas = 0;
+                while (!terminado.get()) {
+                    inventarioService.confirmar(inventarioService.reservar(productoId, 1));
+                    hechas++;
+                }
+                return hechas;
+            }));
+        }
+        salida.countDown();
+        Thread.sleep(duracionMs);
+        terminado.set(true);
+        long total = 0;
+        for (Future<Long> resultado : resultados) {
+            total += resultado.get(10, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+        return total;
+    }
+}
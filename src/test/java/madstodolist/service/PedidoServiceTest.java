@@ -0,0 +1,226 @@
+package madstodolist.service;
+
+import madstodolist.dto.ProductoData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PedidoServiceTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private RecomendacionService recomendacionService;
+
+    private Long crearProducto(int stock) {
+        ProductoData producto = new ProductoData();
+        producto.setNombre("Pelotas");
+        producto.setDeporte("Tenis");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setStock(stock);
+        return productoService.crearProducto(producto).getId();
+    }
+
+    // Crea "numero" usuarios con una unidad del producto en el carrito
+    private List<Long> compradores(int numero, Long productoId) {
+        List<Object[]> filas = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            filas.add(new Object[]{"comprador" + i + "@umh.es", "Comprador " + i, "123"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO usuarios (email, nombre, password, administrador, bloqueado, version) " +
+                "VALUES (?, ?, ?, false, false, 0)", filas);
+        List<Long> usuarios = jdbcTemplate.queryForList("SELECT id FROM usuarios WHERE email LIKE 'comprador%'", Long.class);
+        for (Long usuarioId : usuarios) {
+            carritoService.anadirProducto(usuarioId, productoId, 1);
+        }
+        return usuarios;
+    }
+
+    // Lanza todas las compras a la vez y devuelve cuántas se han guardado
+    private int comprarALaVez(List<Long> usuarios) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(usuarios.size());
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<Boolean>> compras = new ArrayList<>();
+        for (Long usuarioId : usuarios) {
+            compras.add(hilos.submit(() -> {
+                salida.await();
+                try {
+                    pedidoService.realizarPedido(usuarioId).get(30, TimeUnit.SECONDS);
+                    return true;
+                } catch (PedidoServiceException | ExecutionException e) {
+                    return false;
+                }
+            }));
+        }
+        salida.countDown();
+        int realizadas = 0;
+        for (Future<Boolean> compra : compras) {
+            if (compra.get(60, TimeUnit.SECONDS)) realizadas++;
+        }
+        hilos.shutdown();
+        return realizadas;
+    }
+
+    // El futuro se completa con el commit; el carrito se descuenta justo después
+    private void esperarFinCompra(Long usuarioId) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10000;
+        while (pedidoService.compraEnCurso(usuarioId) && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertThat(pedidoService.compraEnCurso(usuarioId)).isFalse();
+    }
+
+    private int stockBD(Long productoId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM productos WHERE id = ?", Integer.class, productoId);
+    }
+
+    private int unidadesVendidas(Long productoId) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(cantidad), 0) FROM pedido_lineas WHERE producto_id = ?",
+                Integer.class, productoId);
+    }
+
+    @Test
+    public void comprasConcurrentesNoVendenMasDeLoQueHay() throws Exception {
+        // GIVEN
+        // 20 unidades y 40 compradores de una unidad
+
+        Long productoId = crearProducto(20);
+        List<Long> usuarios = compradores(40, productoId);
+
+        // WHEN
+
+        int realizadas = comprarALaVez(usuarios);
+
+        // THEN
+
+        assertThat(realizadas).isEqualTo(20);
+        assertThat(unidadesVendidas(productoId)).isEqualTo(20);
+        assertThat(stockBD(productoId)).isZero();
+        assertThat(inventarioService.disponibles(productoId)).isZero();
+    }
+
+    @Test
+    public void noSeVendeLoQueYaHaVendidoOtroNodo() throws Exception {
+        // GIVEN
+        // El contador de este nodo cree que hay 10 unidades, pero otro nodo
+        // ya ha vendido 7 en la base de datos
+
+        Long productoId = crearProducto(10);
+        List<Long> usuarios = compradores(10, productoId);
+        jdbcTemplate.update("UPDATE productos SET stock = stock - 7 WHERE id = ?", productoId);
+
+        // WHEN
+
+        int realizadas = comprarALaVez(usuarios);
+
+        // THEN
+
+        assertThat(realizadas).isEqualTo(3);
+        assertThat(unidadesVendidas(productoId)).isEqualTo(3);
+        assertThat(stockBD(productoId)).isZero();
+        assertThat(inventarioService.disponibles(productoId)).isZero();
+    }
+
+    @Test
+    public void reponerSumaAlStockSinPisarLasVentas() throws Exception {
+        // GIVEN
+        // 5 unidades de las que se venden 2 mientras el formulario de edición
+        // sigue mostrando 5
+
+        Long productoId = crearProducto(5);
+        ProductoData formulario = productoService.findById(productoId);
+        assertThat(comprarALaVez(compradores(2, productoId))).isEqualTo(2);
+
+        // WHEN
+
+        formulario.setReponer(0);
+        productoService.actualizarProducto(productoId, formulario);
+        formulario.setReponer(4);
+        ProductoData actualizado = productoService.actualizarProducto(productoId, formulario);
+
+        // THEN
+
+        assertThat(actualizado.getStock()).isEqualTo(7);
+        assertThat(stockBD(productoId)).isEqualTo(7);
+        assertThat(inventarioService.disponibles(productoId)).isEqualTo(7);
+    }
+
+    @Test
+    public void dosComprasALaVezDelMismoCarritoSoloCobranUnaVez() throws Exception {
+        // GIVEN
+        // Un usuario con 2 unidades en el carrito pulsa "Comprar" varias veces a la vez
+
+        Long productoId = crearProducto(10);
+        Long usuarioId = compradores(1, productoId).get(0);
+        carritoService.anadirProducto(usuarioId, productoId, 1);
+
+        // WHEN
+
+        int realizadas = comprarALaVez(List.of(usuarioId, usuarioId, usuarioId, usuarioId));
+
+        // THEN
+
+        assertThat(realizadas).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pedidos WHERE usuario_id = ?", Integer.class, usuarioId))
+                .isEqualTo(1);
+        assertThat(unidadesVendidas(productoId)).isEqualTo(2);
+        assertThat(stockBD(productoId)).isEqualTo(8);
+        assertThat(inventarioService.disponibles(productoId)).isEqualTo(8);
+        esperarFinCompra(usuarioId);
+        assertThat(carritoService.numeroArticulos(usuarioId)).isZero();
+    }
+
+    @Test
+    public void unFalloTrasElCommitNoAnulaElPedido() throws Exception {
+        // GIVEN
+        // Tres compradores en el mismo lote; las recomendaciones fallan para el primero
+
+        Long productoId = crearProducto(10);
+        List<Long> usuarios = compradores(3, productoId);
+        doThrow(new RuntimeException("Fallo en las recomendaciones"))
+                .when(recomendacionService).registrarCompra(eq(usuarios.get(0)), any(), any());
+
+        // WHEN
+
+        int realizadas = comprarALaVez(usuarios);
+
+        // THEN
+
+        assertThat(realizadas).isEqualTo(3);
+        assertThat(unidadesVendidas(productoId)).isEqualTo(3);
+        assertThat(stockBD(productoId)).isEqualTo(7);
+        for (Long usuarioId : usuarios) {
+            esperarFinCompra(usuarioId);
+            assertThat(carritoService.numeroArticulos(usuarioId)).isZero();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package madstodolist.service;
+
+import madstodolist.dto.BusquedaProductosData;
+import madstodolist.dto.FiltroProductosData;
+import madstodolist.dto.ProductoData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class ProductoServiceTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductoData crearProducto(String nombre) {
+        ProductoData producto = new ProductoData();
+        producto.setNombre(nombre);
+        producto.setDeporte("Esgrima");
+        producto.setMarca("Marca");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setStock(5);
+        producto.setPopularidad(1000);
+        return productoService.crearProducto(producto);
+    }
+
+    private List<Long> ordenPorPopularidad() {
+        FiltroProductosData filtro = new FiltroProductosData();
+        filtro.setOrden(FiltroProductosData.Orden.POPULARIDAD);
+        BusquedaProductosData busqueda = productoService.buscarProductos(filtro, 0, 10);
+        return busqueda.getProductos().stream().map(ProductoData::getId).collect(Collectors.toList());
+    }
+
+    private int popularidadBD(Long productoId) {
+        return jdbcTemplate.queryForObject("SELECT popularidad FROM productos WHERE id = ?", Integer.class, productoId);
+    }
+
+    @Test
+    public void laPopularidadSeAlimentaDeVisitasYVentas() {
+        // GIVEN
+
+        ProductoData florete = crearProducto("Florete");
+        ProductoData careta = crearProducto("Careta");
+
+        // WHEN
+
+        for (int i = 0; i < 3; i++) {
+            productoService.registrarVisita(florete.getId());
+        }
+        productoService.registrarVentas(new long[]{careta.getId()}, new int[]{1});
+        productoService.volcarPopularidad();
+
+        // THEN
+        // La popularidad indicada al crear se ignora
+
+        assertThat(popularidadBD(florete.getId())).isEqualTo(3 * ProductoService.PESO_VISITA);
+        assertThat(popularidadBD(careta.getId())).isEqualTo(ProductoService.PESO_VENTA);
+        assertThat(ordenPorPopularidad()).containsExactly(careta.getId(), florete.getId());
+        // El índice solo contiene los productos de esta prueba
+        assertThat(productoService.buscarProductos(new FiltroProductosData(), 0, 10).getTotalProductos()).isEqualTo(2);
+    }
+
+    @Test
+    public void editarUnProductoNoPisaSuPopularidad() {
+        // GIVEN
+
+        ProductoData florete = crearProducto("Florete");
+        productoService.registrarVisita(florete.getId());
+        productoService.volcarPopularidad();
+
+        // WHEN
+
+        florete.setNombre("Florete eléctrico");
+        florete.setPopularidad(0);
+        productoService.actualizarProducto(florete.getId(), florete);
+
+        // THEN
+
+        assertThat(popularidadBD(florete.getId())).isEqualTo(ProductoService.PESO_VISITA);
+        assertThat(productoService.findById(florete.getId()).getNombre()).isEqualTo("Florete eléctrico");
+    }
+}
@@ -0,0 +1,26 @@
+package madstodolist.service;
+
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+// El índice del catálogo vive en memoria y el contexto de Spring se comparte entre
+// pruebas: tras cada una, y después de clean-db.sql, se vuelve a cargar de la base de
+// datos para que los productos de una prueba no aparezcan en las siguientes.
+// Se registra para todas las pruebas en META-INF/spring.factories.
+public class ReiniciarIndiceCatalogo extends AbstractTestExecutionListener {
+
+    // Los afterTestMethod se ejecutan en orden inverso: con un orden menor que el de
+    // SqlScriptsTestExecutionListener (5000) este va después de los scripts @Sql
+    @Override
+    public int getOrder() {
+        return 4900;
+    }
+
+    @Override
+    public void afterTestMethod(TestContext testContext) {
+        if (testContext.hasApplicationContext()) {
+            testContext.getApplicationContext().getBeanProvider(ProductoService.class)
+                    .ifAvailable(ProductoService::reconstruirIndice);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package madstodolist.service;
+
+import madstodolist.dto.UsuarioData;
+import madstodolist.repository.UsuarioRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Se registra un StatementInspector de Hibernate para ver las sentencias que se ejecutan
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "madstodolist.service.UsuarioServiceTest$RegistroSentencias")
+@Sql(scripts = "/clean-db.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class UsuarioServiceTest {
+
+    // Guarda todas las sentencias SQL que genera Hibernate
+    public static class RegistroSentencias implements StatementInspector {
+        static final List<String> SENTENCIAS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SENTENCIAS.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UsuarioData registrarUsuario() {
+        UsuarioData usuario = new UsuarioData();
+        usuario.setEmail("usuario@umh.es");
+        usuario.setNombre("Usuario");
+        usuario.setPassword("123");
+        return usuarioService.registrar(usuario);
+    }
+
+    private static List<String> updatesUsuarios() {
+        return RegistroSentencias.SENTENCIAS.stream()
+                .map(sql -> sql.toLowerCase(Locale.ROOT))
+                .filter(sql -> sql.startsWith("update usuarios"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void cambiarSoloElNombreEscribeSoloNombreYVersion() {
+        // GIVEN
+
+        UsuarioData usuario = registrarUsuario();
+        RegistroSentencias.SENTENCIAS.clear();
+
+        // WHEN
+
+        usuario.setNombre("Usuario Modificado");
+        usuarioService.actualizarUsuario(usuario.getId(), usuario);
+
+        // THEN
+        // Un único UPDATE cuyo SET solo incluye el nombre y la versión
+
+        List<String> updates = updatesUsuarios();
+        assertThat(updates).hasSize(1);
+        String update = updates.get(0);
+        String columnas = update.substring(update.indexOf(" set ") + 5, update.indexOf(" where "));
+        assertThat(columnas.replace(" ", "").split(",")).containsExactlyInAnyOrder("nombre=?", "version=?");
+        assertThat(usuarioService.findById(usuario.getId()).getNombre()).isEqualTo("Usuario Modificado");
+    }
+
+    @Test
+    public void guardarSinCambiosNoEscribeNada() {
+        // GIVEN
+
+        UsuarioData usuario = registrarUsuario();
+        RegistroSentencias.SENTENCIAS.clear();
+
+        // WHEN
+
+        UsuarioData guardado = usuarioService.actualizarUsuario(usuario.getId(), usuario);
+
+        // THEN
+
+        assertThat(updatesUsuarios()).isEmpty();
+        assertThat(guardado.getVersion()).isEqualTo(usuario.getVersion());
+    }
+
+    @Test
+    public void editarConUnaVersionAntiguaLanzaConflicto() {
+        // GIVEN
+        // Dos administradores abren el mismo usuario y el primero guarda
+
+        UsuarioData primero = registrarUsuario();
+        UsuarioData segundo = usuarioService.findById(primero.getId());
+        primero.setNombre("Primero");
+        usuarioService.actualizarUsuario(primero.getId(), primero);
+
+        // WHEN
+        // El segundo guarda con la versión que leyó
+
+        segundo.setNombre("Segundo");
+
+        // THEN
+
+        assertThatThrownBy(() -> usuarioService.actualizarUsuario(segundo.getId(), segundo))
+                .isInstanceOf(UsuarioConflictoException.class);
+        assertThat(usuarioService.findById(primero.getId()).getNombre()).isEqualTo("Primero");
+    }
+
+    @Test
+    public void unaModificacionConcurrenteLanzaConflicto() {
+        // GIVEN
+
+        UsuarioData usuario = registrarUsuario();
+        usuario.setVersion(null);
+        usuario.setNombre("Modificado");
+
+        // WHEN
+        // Otra transacción cambia la fila después de que ésta haya leído el usuario
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            usuarioRepository.findById(usuario.getId());
+            jdbcTemplate.update("UPDATE usuarios SET version = version + 1 WHERE id = ?", usuario.getId());
+
+            // THEN
+
+            assertThatThrownBy(() -> usuarioService.actualizarUsuario(usuario.getId(), usuario))
+                    .isInstanceOf(UsuarioConflictoException.class);
+            estado.setRollbackOnly();
+        });
+    }
+
+    @Test
+    public void bloquearOEliminarUnUsuarioModificadoALaVezLanzaConflicto() {
+        // GIVEN
+
+        UsuarioData usuario = registrarUsuario();
+
+        // WHEN
+        // Otra transacción cambia la fila después de que cada operación haya leído el usuario
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            usuarioRepository.findById(usuario.getId());
+            jdbcTemplate.update("UPDATE usuarios SET version = version + 1 WHERE id = ?", usuario.getId());
+
+            // THEN
+
+            assertThatThrownBy(() -> usuarioService.cambiarEstadoBloqueoUsuario(usuario.getId(), true))
+                    .isInstanceOf(UsuarioConflictoException.class);
+            estado.setRollbackOnly();
+        });
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            usuarioRepository.findById(usuario.getId());
+            jdbcTemplate.update("UPDATE usuarios SET version = version + 1 WHERE id = ?", usuario.getId());
+            assertThatThrownBy(() -> usuarioService.eliminarUsuario(usuario.getId()))
+                    .isInstanceOf(UsuarioConflictoException.class);
+            estado.setRollbackOnly();
+        });
+        assertThat(usuarioService.findById(usuario.getId())).isNotNull();
+        assertThat(usuarioService.isUsuarioBloqueado(usuario.getId())).isFalse();
+    }
+}
@@ -1,4 +1,5 @@
-DELETE FROM equipo_usuario;
-DELETE FROM tareas;
-DELETE FROM equipos;
+DELETE FROM pedido_lineas;
+DELETE FROM pedidos;
+DELETE FROM carrito_lineas;
+DELETE FROM productos;
 DELETE FROM usuarios;